@@ -0,0 +1,55 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A sequence of frames played by the view.
+ * Implementations decide when the frames are decoded and how long they are
+ * kept in memory.
+ */
+public interface Animation {
+
+	/**
+	 * @return the number of frames of the animation
+	 */
+	int frameCount();
+
+	/**
+	 * Returns the frame to display at the given index.
+	 *
+	 * @param index frame index, between 0 and {@link #frameCount()} excluded
+	 * @return the frame image
+	 */
+	BufferedImage frame(int index);
+
+	/**
+	 * Tells whether a frame can be displayed without waiting for the decoding.
+	 *
+	 * @return true if the animation can be played right away
+	 */
+	default boolean isReady() {
+		return true;
+	}
+
+	/**
+	 * Creates an animation from frames already decoded.
+	 *
+	 * @param frames the decoded frames
+	 * @return an animation keeping all its frames in memory
+	 */
+	static Animation of(List<BufferedImage> frames) {
+		List<BufferedImage> copy = List.copyOf(frames);
+		return new Animation() {
+			@Override
+			public int frameCount() {
+				return copy.size();
+			}
+
+			@Override
+			public BufferedImage frame(int index) {
+				return copy.get(index);
+			}
+		};
+	}
+}
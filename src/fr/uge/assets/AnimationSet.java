@@ -0,0 +1,53 @@
+package fr.uge.assets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The animations of the game and the files of their frames.
+ */
+public enum AnimationSet {
+	LOADING("loadingscreen", "loading", "jpg", 161, 1),
+	FIGHTING_1("fighting1", "hit_", "png", 157, 2),
+	FIGHTING_2("fighting2", "hit_", "png", 78, 2),
+	FIGHTING_3("fighting3", "hit_", "png", 78, 2),
+	CORRIDOR_TO_CORRIDOR("animationroom", "room", "jpg", 160, 1),
+	MERCHANT_TO_CORRIDOR("animationmerchant", "merchant", "png", 160, 1);
+
+	private final String folder;
+	private final String name;
+	private final String type;
+	private final int nbFrames;
+	private final int step;
+
+	AnimationSet(String folder, String name, String type, int nbFrames, int step) {
+		this.folder = folder;
+		this.name = name;
+		this.type = type;
+		this.nbFrames = nbFrames;
+		this.step = step;
+	}
+
+	/**
+	 * @return the folder of the frames, relative to the data folder
+	 */
+	public String folder() {
+		return folder;
+	}
+
+	/**
+	 * Returns the frame files in playing order.
+	 * Only one frame out of {@code step} is kept for the heaviest animations.
+	 *
+	 * @return frame files, relative to the data folder
+	 */
+	public List<String> fileNames() {
+		List<String> names = new ArrayList<>();
+		for (int i = 1; i < nbFrames; i++) { // a modifier le /10 !!!
+			if (i % step == 0) {
+				names.add(folder + "/" + name + "(" + i + ")." + type);
+			}
+		}
+		return names;
+	}
+}
@@ -0,0 +1,385 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decodes the images of the data folder on a bounded pool of worker threads.
+ * Images submitted together are returned in submission order, and the number
+ * of decoded images is counted so the loading screen can show real progress.
+ * Images requested with {@link #load} go through an {@link ImageCache} and are
+ * decoded again transparently after an eviction. With a {@link DiskCache},
+ * resampled images are read from disk instead of being decoded when a
+ * previous launch already decoded them.
+ */
+public final class AssetLoader {
+
+	/** Folder containing the assets of the game */
+	public static final Path DATA_FOLDER = Path.of("./data");
+
+	private final ExecutorService executor;
+	private final ImageCache cache;
+	private final DiskCache diskCache;
+	private final LoadMetrics metrics = new LoadMetrics();
+	private final Map<String, CompletableFuture<BufferedImage>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicInteger submitted = new AtomicInteger();
+	private final AtomicInteger decoded = new AtomicInteger();
+	private final AtomicInteger planned = new AtomicInteger();
+	private final Map<String, SizedKey> sizedKeys = new ConcurrentHashMap<>();
+
+	/** Cache key of a file resampled at a size, kept to look it up again without building it */
+	private record SizedKey(int width, int height, String key) {
+	}
+
+	/**
+	 * Creates a loader with one worker per available core.
+	 *
+	 * @param cache cache of the loaded images
+	 */
+	public AssetLoader(ImageCache cache) {
+		this(Runtime.getRuntime().availableProcessors(), cache, null);
+	}
+
+	/**
+	 * Creates a loader with one worker per available core, reading and writing
+	 * the resampled images in a disk cache.
+	 *
+	 * @param cache     cache of the loaded images
+	 * @param diskCache cache of the decoded images across launches
+	 */
+	public AssetLoader(ImageCache cache, DiskCache diskCache) {
+		this(Runtime.getRuntime().availableProcessors(), cache, Objects.requireNonNull(diskCache));
+	}
+
+	/**
+	 * Creates a loader with a fixed number of workers.
+	 *
+	 * @param threads number of decoding threads
+	 * @param cache   cache of the loaded images
+	 */
+	public AssetLoader(int threads, ImageCache cache) {
+		this(threads, cache, null);
+	}
+
+	private AssetLoader(int threads, ImageCache cache, DiskCache diskCache) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Invalid thread count: " + threads);
+		this.cache = Objects.requireNonNull(cache);
+		this.diskCache = diskCache;
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "asset-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Decodes an image of the data folder on the calling thread.
+	 *
+	 * @param fileName path relative to the data folder
+	 * @return the decoded image
+	 */
+	public static BufferedImage decode(String fileName) {
+		return decode(DATA_FOLDER, fileName);
+	}
+
+	/**
+	 * Decodes an image of another data folder on the calling thread.
+	 *
+	 * @param dataFolder folder the name is relative to
+	 * @param fileName   path relative to the data folder
+	 * @return the decoded image
+	 */
+	public static BufferedImage decode(Path dataFolder, String fileName) {
+		Objects.requireNonNull(dataFolder);
+		Objects.requireNonNull(fileName);
+		try {
+			File file = dataFolder.resolve(fileName).toFile();
+			BufferedImage result = ImageIO.read(file);
+			if (result == null) {
+				throw new IllegalArgumentException("Error loading: " + fileName);
+			}
+			return result;
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to load: " + fileName, e);
+		}
+	}
+
+	/**
+	 * Schedules the decoding of one image.
+	 *
+	 * @param fileName path relative to the data folder
+	 * @return the pending image
+	 */
+	public CompletableFuture<BufferedImage> submit(String fileName) {
+		return schedule(fileName, 0, 0);
+	}
+
+	/**
+	 * Schedules the decoding of one image, resampled to the size it is drawn at.
+	 *
+	 * @param fileName path relative to the data folder
+	 * @param width    width the image is drawn at
+	 * @param height   height the image is drawn at
+	 * @return the pending image
+	 */
+	public CompletableFuture<BufferedImage> submit(String fileName, int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+		return schedule(fileName, width, height);
+	}
+
+	private CompletableFuture<BufferedImage> schedule(String fileName, int width, int height) {
+		Objects.requireNonNull(fileName);
+		submitted.incrementAndGet();
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return read(fileName, width, height);
+			} finally {
+				decoded.incrementAndGet();
+			}
+		}, executor);
+	}
+
+	/**
+	 * Reads an image from the disk cache, or decodes it, resamples it and
+	 * writes it in the disk cache. A width of 0 keeps the original size, such
+	 * images are not cached on disk. The time spent is recorded in the metrics.
+	 */
+	private BufferedImage read(String fileName, int width, int height) {
+		boolean resampled = width > 0;
+		ImageLoadEvent event = new ImageLoadEvent();
+		event.begin();
+		long start = System.nanoTime();
+
+		String source = LoadMetrics.DISK;
+		BufferedImage image = resampled && diskCache != null ? diskCache.read(fileName, width, height) : null;
+		if (image == null) {
+			source = LoadMetrics.DECODED;
+			image = decode(fileName);
+			if (resampled) {
+				image = ImageScaler.scale(image, width, height);
+				if (diskCache != null) {
+					diskCache.write(fileName, image);
+				}
+			}
+		}
+
+		long nanos = System.nanoTime() - start;
+		event.end();
+		// the disk cache has just checked the size of the source, only a
+		// decoded image looks at the source file again
+		long fileSize = LoadMetrics.DISK.equals(source) ? diskCache.sourceBytes(fileName)
+				: DATA_FOLDER.resolve(fileName).toFile().length();
+		metrics.record(event, fileName, source, fileSize, nanos, image);
+		return image;
+	}
+
+	/**
+	 * Returns a cached image, scheduling its decoding if it is not in the cache.
+	 * Concurrent requests for the same image share the same decoding.
+	 *
+	 * @param group    cache group of the image
+	 * @param fileName path relative to the data folder
+	 * @param width    width the image is drawn at
+	 * @param height   height the image is drawn at
+	 * @return the pending image
+	 */
+	public CompletableFuture<BufferedImage> load(String group, String fileName, int width, int height) {
+		return load(group, key(fileName, width, height), () -> submit(fileName, width, height));
+	}
+
+	/**
+	 * Returns an image if it is in the cache, without scheduling anything.
+	 * A hit allocates nothing, so it can be called on each frame.
+	 *
+	 * @param group    cache group of the image
+	 * @param fileName path relative to the data folder
+	 * @param width    width the image is drawn at
+	 * @param height   height the image is drawn at
+	 * @return the image, or null if it is not in the cache
+	 */
+	public BufferedImage peek(String group, String fileName, int width, int height) {
+		return cache.get(group, key(fileName, width, height));
+	}
+
+	/**
+	 * Returns the cache key of an image at a size. The key of the last size
+	 * asked for each file is kept, a file is usually drawn at a single size.
+	 */
+	private String key(String fileName, int width, int height) {
+		SizedKey sized = sizedKeys.get(fileName);
+		if (sized == null || sized.width() != width || sized.height() != height) {
+			sized = new SizedKey(width, height, fileName + "@" + width + "x" + height);
+			sizedKeys.put(fileName, sized);
+		}
+		return sized.key();
+	}
+
+	/**
+	 * Returns a cached image at its original size, scheduling its decoding if it
+	 * is not in the cache.
+	 *
+	 * @param group    cache group of the image
+	 * @param fileName path relative to the data folder
+	 * @return the pending image
+	 */
+	public CompletableFuture<BufferedImage> load(String group, String fileName) {
+		return load(group, fileName, () -> submit(fileName));
+	}
+
+	private CompletableFuture<BufferedImage> load(String group, String key,
+			Supplier<CompletableFuture<BufferedImage>> decoder) {
+		BufferedImage cached = cache.get(group, key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+
+		CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+		CompletableFuture<BufferedImage> pending = inFlight.putIfAbsent(key, created);
+		if (pending != null) {
+			return pending;
+		}
+		decoder.get().whenComplete((image, error) -> {
+			if (error == null) {
+				cache.put(group, key, image);
+			}
+			inFlight.remove(key, created);
+			if (error == null) {
+				created.complete(image);
+			} else {
+				created.completeExceptionally(error);
+			}
+		});
+		return created;
+	}
+
+	/**
+	 * Returns a cached image, waiting for its decoding if it is not in the cache.
+	 *
+	 * @param group    cache group of the image
+	 * @param fileName path relative to the data folder
+	 * @param width    width the image is drawn at
+	 * @param height   height the image is drawn at
+	 * @return the image
+	 */
+	public BufferedImage image(String group, String fileName, int width, int height) {
+		BufferedImage cached = peek(group, fileName, width, height);
+		return cached != null ? cached : join(load(group, fileName, width, height));
+	}
+
+	/**
+	 * Returns a cached image at its original size, waiting for its decoding if it
+	 * is not in the cache.
+	 *
+	 * @param group    cache group of the image
+	 * @param fileName path relative to the data folder
+	 * @return the image
+	 */
+	public BufferedImage image(String group, String fileName) {
+		BufferedImage cached = cache.get(group, fileName);
+		return cached != null ? cached : join(load(group, fileName));
+	}
+
+	/**
+	 * @return the measures of the images read so far
+	 */
+	public LoadMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the cache of the loaded images
+	 */
+	public ImageCache cache() {
+		return cache;
+	}
+
+	/**
+	 * Schedules the decoding of several images, for example all the frames of an
+	 * animation.
+	 *
+	 * @param fileNames paths relative to the data folder
+	 * @return the pending images, in the same order as the names
+	 */
+	public List<CompletableFuture<BufferedImage>> submitAll(List<String> fileNames) {
+		return fileNames.stream().map(this::submit).toList();
+	}
+
+	/**
+	 * Waits for a pending image.
+	 *
+	 * @param pending the pending image
+	 * @return the decoded image
+	 */
+	public static BufferedImage join(CompletableFuture<BufferedImage> pending) {
+		try {
+			return pending.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for several pending images.
+	 *
+	 * @param pending the pending images
+	 * @return the decoded images, in the same order
+	 */
+	public static List<BufferedImage> joinAll(List<CompletableFuture<BufferedImage>> pending) {
+		return pending.stream().map(AssetLoader::join).toList();
+	}
+
+	/**
+	 * @return number of images already decoded
+	 */
+	public int decodedCount() {
+		return decoded.get();
+	}
+
+	/**
+	 * @return number of images submitted so far
+	 */
+	public int submittedCount() {
+		return submitted.get();
+	}
+
+	/**
+	 * Announces how many images are going to be submitted, so the progress does
+	 * not jump back when they are submitted one after the other.
+	 *
+	 * @param count number of images expected in total
+	 */
+	public void plan(int count) {
+		if (count < 0)
+			throw new IllegalArgumentException("Invalid count: " + count);
+		planned.accumulateAndGet(count, Math::max);
+	}
+
+	/**
+	 * @return ratio of decoded images, between 0 and 1
+	 */
+	public double progress() {
+		int total = Math.max(submitted.get(), planned.get());
+		if (total == 0)
+			return 1.0;
+		return Math.min(1.0, decoded.get() / (double) total);
+	}
+}
@@ -0,0 +1,304 @@
+package fr.uge.assets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * List of every asset of the data folder with its size and group.
+ * The manifest is generated at build time and read once at startup, so the
+ * game knows which files to load, in which order and how big they are without
+ * listing folders or building file names.
+ *
+ * <p>File format: one asset per line, tab separated:
+ * {@code group path width height bytes hash}. Lines starting with {@code #} are
+ * comments. Inside a group, lines are in loading order.
+ */
+public final class AssetManifest {
+
+	/** Name of the manifest file in the data folder */
+	public static final String FILE_NAME = "assets.manifest";
+
+	/** Group of the images at the root of the data folder */
+	public static final String STATIC_GROUP = "static";
+
+	/** Group of the item images */
+	public static final String WEAPONS_GROUP = "weapons";
+
+	/**
+	 * An asset of the manifest.
+	 *
+	 * @param group  group of the asset
+	 * @param path   path relative to the data folder
+	 * @param width  width of the image in pixels
+	 * @param height height of the image in pixels
+	 * @param bytes  size of the file
+	 * @param hash   hash of the content of the file
+	 */
+	public record Entry(String group, String path, int width, int height, long bytes, String hash) {
+		public Entry {
+			Objects.requireNonNull(group);
+			Objects.requireNonNull(path);
+			Objects.requireNonNull(hash);
+			if (width <= 0 || height <= 0 || bytes < 0)
+				throw new IllegalArgumentException("Invalid entry: " + path);
+		}
+
+		/**
+		 * @return the number of bytes of the decoded image, with 4 bytes per pixel
+		 */
+		public long pixelBytes() {
+			return (long) width * height * Integer.BYTES;
+		}
+	}
+
+	private final Map<String, List<Entry>> groups;
+	private final Map<String, Entry> byPath = new HashMap<>();
+
+	private AssetManifest(Map<String, List<Entry>> groups) {
+		this.groups = groups;
+		groups.values().forEach(entries -> entries.forEach(entry -> byPath.put(entry.path(), entry)));
+	}
+
+	/**
+	 * Reads the manifest of a data folder.
+	 *
+	 * @param dataFolder the data folder
+	 * @return the manifest
+	 */
+	public static AssetManifest load(Path dataFolder) {
+		Path file = dataFolder.resolve(FILE_NAME);
+		try {
+			Map<String, List<Entry>> groups = new LinkedHashMap<>();
+			for (String line : Files.readAllLines(file)) {
+				if (line.isBlank() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("\t");
+				if (fields.length != 6)
+					throw new IllegalArgumentException("Invalid manifest line: " + line);
+				Entry entry = new Entry(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+						Long.parseLong(fields[4]), fields[5]);
+				groups.computeIfAbsent(entry.group(), g -> new ArrayList<>()).add(entry);
+			}
+			return new AssetManifest(freeze(groups));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read manifest: " + file, e);
+		}
+	}
+
+	/**
+	 * Reads the manifest of a data folder, or builds it by scanning the folder
+	 * when it has not been generated.
+	 *
+	 * @param dataFolder the data folder
+	 * @return the manifest
+	 */
+	public static AssetManifest loadOrScan(Path dataFolder) {
+		if (Files.isRegularFile(dataFolder.resolve(FILE_NAME))) {
+			return load(dataFolder);
+		}
+		System.out.println("Warning : no " + FILE_NAME + ", scanning the data folder");
+		return scan(dataFolder);
+	}
+
+	/**
+	 * Builds the manifest of a data folder: the frames of each
+	 * {@link AnimationSet}, the item images and the images at the root.
+	 *
+	 * @param dataFolder the data folder
+	 * @return the manifest
+	 */
+	public static AssetManifest scan(Path dataFolder) {
+		Map<String, List<Entry>> groups = new LinkedHashMap<>();
+		for (AnimationSet set : AnimationSet.values()) {
+			groups.put(set.folder(), describe(dataFolder, set.folder(), set.fileNames()));
+		}
+		groups.put(WEAPONS_GROUP, describe(dataFolder, WEAPONS_GROUP, listImages(dataFolder, WEAPONS_GROUP)));
+		groups.put(STATIC_GROUP, describe(dataFolder, STATIC_GROUP, listImages(dataFolder, "")));
+		return new AssetManifest(freeze(groups));
+	}
+
+	private static List<String> listImages(Path dataFolder, String folder) {
+		File[] files = dataFolder.resolve(folder).toFile().listFiles();
+		if (files == null)
+			return List.of();
+		return Arrays.stream(files).filter(File::isFile).map(File::getName)
+				.filter(name -> name.endsWith(".png") || name.endsWith(".jpg")).sorted()
+				.map(name -> folder.isEmpty() ? name : folder + "/" + name).toList();
+	}
+
+	private static List<Entry> describe(Path dataFolder, String group, List<String> paths) {
+		List<Entry> entries = new ArrayList<>();
+		for (String path : paths) {
+			File file = dataFolder.resolve(path).toFile();
+			try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+				if (input == null)
+					throw new IOException("Missing file");
+				Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+				if (!readers.hasNext())
+					throw new IOException("Unknown image format");
+				ImageReader reader = readers.next();
+				try {
+					reader.setInput(input);
+					entries.add(new Entry(group, path, reader.getWidth(0), reader.getHeight(0), file.length(),
+							hashOf(file.toPath())));
+				} finally {
+					reader.dispose();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to describe: " + path, e);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Hashes the content of a file, so a cache of its decoded pixels can tell
+	 * whether the file has changed.
+	 *
+	 * @param file the file
+	 * @return the first 128 bits of its SHA-256, in hexadecimal
+	 */
+	public static String hashOf(Path file) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			try (var input = new DigestInputStream(Files.newInputStream(file), digest)) {
+				input.transferTo(OutputStream.nullOutputStream());
+			}
+			return HexFormat.of().formatHex(digest.digest(), 0, 16);
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static Map<String, List<Entry>> freeze(Map<String, List<Entry>> groups) {
+		Map<String, List<Entry>> copy = new LinkedHashMap<>();
+		groups.forEach((group, entries) -> copy.put(group, List.copyOf(entries)));
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Writes the manifest in a data folder.
+	 *
+	 * @param dataFolder the data folder
+	 */
+	public void write(Path dataFolder) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("# Generated by AssetManifest, do not edit");
+		lines.add("# group\tpath\twidth\theight\tbytes\thash");
+		for (List<Entry> entries : groups.values()) {
+			for (Entry entry : entries) {
+				lines.add(entry.group() + "\t" + entry.path() + "\t" + entry.width() + "\t" + entry.height() + "\t"
+						+ entry.bytes() + "\t" + entry.hash());
+			}
+		}
+		Files.write(dataFolder.resolve(FILE_NAME), lines);
+	}
+
+	/**
+	 * Returns the assets of a group in loading order.
+	 *
+	 * @param group the group
+	 * @return its assets, empty if the group is unknown
+	 */
+	public List<Entry> group(String group) {
+		return groups.getOrDefault(group, List.of());
+	}
+
+	/**
+	 * Returns the paths of the assets of a group in loading order.
+	 *
+	 * @param group the group
+	 * @return paths relative to the data folder
+	 */
+	public List<String> paths(String group) {
+		return group(group).stream().map(Entry::path).toList();
+	}
+
+	/**
+	 * Returns the memory the decoded images of a group need.
+	 *
+	 * @param group the group
+	 * @return number of bytes of pixels
+	 */
+	public long pixelBytes(String group) {
+		return group(group).stream().mapToLong(Entry::pixelBytes).sum();
+	}
+
+	/**
+	 * Looks for an asset by path.
+	 *
+	 * @param path path relative to the data folder
+	 * @return the asset, or null if it is not in the manifest
+	 */
+	public Entry find(String path) {
+		return byPath.get(path);
+	}
+
+	/**
+	 * @return number of assets in the manifest
+	 */
+	public int size() {
+		return groups.values().stream().mapToInt(List::size).sum();
+	}
+
+	/**
+	 * Checks that every asset of the manifest is present with the expected size.
+	 * Only file metadata is read, images are not decoded.
+	 *
+	 * @param dataFolder the data folder
+	 * @return a description of each problem, empty if the data folder is complete
+	 */
+	public List<String> validate(Path dataFolder) {
+		List<String> problems = new ArrayList<>();
+		for (List<Entry> entries : groups.values()) {
+			for (Entry entry : entries) {
+				Path file = dataFolder.resolve(entry.path());
+				try {
+					long size = Files.size(file);
+					if (size != entry.bytes()) {
+						problems.add(entry.path() + " : " + size + " bytes instead of " + entry.bytes());
+					}
+				} catch (IOException e) {
+					problems.add(entry.path() + " : missing");
+				}
+			}
+		}
+		return problems;
+	}
+
+	/**
+	 * Generates the manifest of a data folder.
+	 * Usage: {@code AssetManifest <data folder>}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: AssetManifest <data folder>");
+			System.exit(1);
+		}
+		Path dataFolder = Path.of(args[0]);
+		AssetManifest manifest = scan(dataFolder);
+		manifest.write(dataFolder);
+		System.out.println("Manifest written : " + manifest.size() + " assets");
+	}
+}
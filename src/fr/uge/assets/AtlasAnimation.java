@@ -0,0 +1,123 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Animation read from an atlas file produced by {@link AtlasPacker}.
+ * The file is memory-mapped once and frames are copied from the raw pixels,
+ * no image decoding happens at runtime.
+ *
+ * <p>File layout (big endian): magic, version, frame count, width, height,
+ * image type, then one long offset per frame, then the pixels of each frame as
+ * {@code width * height} ints.
+ */
+public final class AtlasAnimation implements Animation {
+
+	static final int MAGIC = 0x42504841; // "BPHA"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+	private final MappedByteBuffer buffer;
+	private final long[] offsets;
+	private final int width;
+	private final int height;
+	private final BufferedImage canvas;
+	private int canvasIndex = -1;
+
+	private AtlasAnimation(MappedByteBuffer buffer, long[] offsets, int width, int height, int imageType) {
+		this.buffer = buffer;
+		this.offsets = offsets;
+		this.width = width;
+		this.height = height;
+		this.canvas = new BufferedImage(width, height, imageType);
+	}
+
+	/**
+	 * Returns the atlas file of an animation.
+	 *
+	 * @param dataFolder the data folder
+	 * @param set        the animation
+	 * @return the path of its atlas, which may not exist
+	 */
+	public static Path pathOf(Path dataFolder, AnimationSet set) {
+		return dataFolder.resolve("atlas").resolve(set.folder() + ".atlas");
+	}
+
+	/**
+	 * Maps an atlas file in memory.
+	 *
+	 * @param path the atlas file
+	 * @return the animation stored in the atlas
+	 */
+	public static AtlasAnimation open(Path path) {
+		Objects.requireNonNull(path);
+		try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				throw new IllegalArgumentException("Not an atlas file: " + path);
+			int frameCount = buffer.getInt();
+			int width = buffer.getInt();
+			int height = buffer.getInt();
+			int imageType = buffer.getInt();
+			if (frameCount <= 0 || width <= 0 || height <= 0)
+				throw new IllegalArgumentException("Corrupted atlas file: " + path);
+
+			long[] offsets = new long[frameCount];
+			long frameBytes = (long) width * height * Integer.BYTES;
+			for (int i = 0; i < frameCount; i++) {
+				offsets[i] = buffer.getLong();
+				if (offsets[i] < 0 || offsets[i] + frameBytes > channel.size())
+					throw new IllegalArgumentException("Corrupted atlas file: " + path);
+			}
+			return new AtlasAnimation(buffer, offsets, width, height, imageType);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to open atlas: " + path, e);
+		}
+	}
+
+	/**
+	 * Opens the atlas of an animation if it has been packed.
+	 *
+	 * @param dataFolder the data folder
+	 * @param set        the animation
+	 * @return the animation, or null if there is no atlas for it
+	 */
+	public static AtlasAnimation openIfPresent(Path dataFolder, AnimationSet set) {
+		Path path = pathOf(dataFolder, set);
+		if (!Files.isRegularFile(path))
+			return null;
+		return open(path);
+	}
+
+	@Override
+	public int frameCount() {
+		return offsets.length;
+	}
+
+	/**
+	 * Returns the frame at the given index.
+	 * The same image is reused for every frame, it is only valid until the
+	 * next call.
+	 */
+	@Override
+	public BufferedImage frame(int index) {
+		Objects.checkIndex(index, offsets.length);
+		if (index != canvasIndex) {
+			int[] pixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+			ByteBuffer frame = buffer.slice((int) offsets[index], width * height * Integer.BYTES);
+			frame.asIntBuffer().get(pixels);
+			canvasIndex = index;
+		}
+		return canvas;
+	}
+}
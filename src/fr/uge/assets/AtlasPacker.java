@@ -0,0 +1,94 @@
+package fr.uge.assets;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Build-time tool packing each animation folder into a single atlas file.
+ * Frames are resized to the target resolution and stored as raw pixels so the
+ * game can read them back with {@link AtlasAnimation} without decoding PNGs.
+ *
+ * <p>Usage: {@code AtlasPacker <data folder> <width> <height>}
+ */
+public final class AtlasPacker {
+
+	private AtlasPacker() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: AtlasPacker <data folder> <width> <height>");
+			System.exit(1);
+		}
+		Path dataFolder = Path.of(args[0]);
+		int width = Integer.parseInt(args[1]);
+		int height = Integer.parseInt(args[2]);
+
+		for (AnimationSet set : AnimationSet.values()) {
+			Path atlas = AtlasAnimation.pathOf(dataFolder, set);
+			pack(dataFolder, set.fileNames(), atlas, width, height);
+			System.out.println("Packed " + set.folder() + " : " + Files.size(atlas) / (1024 * 1024) + " MB");
+		}
+	}
+
+	/**
+	 * Writes the atlas of one animation.
+	 *
+	 * @param dataFolder folder the frame names are relative to
+	 * @param fileNames  frames of the animation, in playing order
+	 * @param atlas      file to write
+	 * @param width      width of the stored frames
+	 * @param height     height of the stored frames
+	 */
+	public static void pack(Path dataFolder, List<String> fileNames, Path atlas, int width, int height)
+			throws IOException {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+		BufferedImage first = AssetLoader.decode(dataFolder, fileNames.get(0));
+		int imageType = first.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+		Files.createDirectories(atlas.getParent());
+		try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(atlas), 1 << 20))) {
+			output.writeInt(AtlasAnimation.MAGIC);
+			output.writeInt(AtlasAnimation.VERSION);
+			output.writeInt(fileNames.size());
+			output.writeInt(width);
+			output.writeInt(height);
+			output.writeInt(imageType);
+
+			long frameBytes = (long) width * height * Integer.BYTES;
+			long offset = AtlasAnimation.HEADER_SIZE + (long) fileNames.size() * Long.BYTES;
+			for (int i = 0; i < fileNames.size(); i++) {
+				output.writeLong(offset + i * frameBytes);
+			}
+
+			BufferedImage frame = new BufferedImage(width, height, imageType);
+			int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+			ByteBuffer bytes = ByteBuffer.allocate((int) frameBytes);
+			for (int i = 0; i < fileNames.size(); i++) {
+				BufferedImage source = i == 0 ? first : AssetLoader.decode(dataFolder, fileNames.get(i));
+				Graphics2D g = frame.createGraphics();
+				try {
+					g.setComposite(AlphaComposite.Src);
+					g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+					g.drawImage(source, 0, 0, width, height, null);
+				} finally {
+					g.dispose();
+				}
+				bytes.clear();
+				bytes.asIntBuffer().put(pixels);
+				output.write(bytes.array());
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package fr.uge.assets;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Animation stored as one keyframe followed by the rectangles that change from
+ * one frame to the next.
+ * Frames are rebuilt incrementally in a single image while the animation plays,
+ * which is much smaller than keeping every frame when consecutive frames are
+ * almost identical.
+ */
+public final class DeltaAnimation implements Animation {
+
+	private static final int TILE_SIZE = 32;
+	private static final int TOLERANCE = 6;
+
+	/**
+	 * Pixels to copy into the canvas to go from one frame to the next.
+	 */
+	private record Patch(int x, int y, int width, int height, int[] pixels) {
+	}
+
+	private final int[] keyframe;
+	private final List<List<Patch>> deltas;
+	private final int width;
+	private final BufferedImage canvas;
+	private final int[] canvasPixels;
+	private int canvasIndex = -1;
+
+	private DeltaAnimation(int[] keyframe, List<List<Patch>> deltas, int width, int height, int imageType) {
+		this.keyframe = keyframe;
+		this.deltas = deltas;
+		this.width = width;
+		this.canvas = new BufferedImage(width, height, imageType);
+		this.canvasPixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Encodes an animation in the background.
+	 * Frames are decoded by the loader a few at a time and compared with the
+	 * previous one, so only a handful of full frames are in memory at once.
+	 *
+	 * @param loader    loader used to decode the frames
+	 * @param fileNames frame files, relative to the data folder
+	 * @param width     width the frames are drawn at
+	 * @param height    height the frames are drawn at
+	 * @return the pending animation
+	 */
+	public static CompletableFuture<DeltaAnimation> encodeAsync(AssetLoader loader, List<String> fileNames, int width,
+			int height) {
+		Objects.requireNonNull(loader);
+		List<String> names = List.copyOf(fileNames);
+		if (names.isEmpty())
+			throw new IllegalArgumentException("Animation without frames");
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+		CompletableFuture<DeltaAnimation> result = new CompletableFuture<>();
+		Thread.ofPlatform().daemon().name("delta-encoder").start(() -> {
+			try {
+				result.complete(encode(loader, names, width, height));
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private static DeltaAnimation encode(AssetLoader loader, List<String> fileNames, int width, int height) {
+		int lookahead = Runtime.getRuntime().availableProcessors() + 1;
+		ArrayDeque<CompletableFuture<BufferedImage>> pending = new ArrayDeque<>();
+		int next = 0;
+
+		int imageType = BufferedImage.TYPE_INT_RGB;
+		int[] reference = null;
+		List<List<Patch>> deltas = new ArrayList<>();
+		int[] keyframe = null;
+		int[] pixels = new int[width * height];
+
+		for (int i = 0; i < fileNames.size(); i++) {
+			while (next < fileNames.size() && pending.size() < lookahead) {
+				pending.add(loader.submit(fileNames.get(next++), width, height));
+			}
+			BufferedImage source = AssetLoader.join(pending.poll());
+			if (reference == null) {
+				imageType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+			}
+			readPixels(source, imageType, pixels);
+
+			if (reference == null) {
+				keyframe = pixels.clone();
+				reference = pixels.clone();
+			} else {
+				deltas.add(diff(reference, pixels, width, height));
+			}
+		}
+		return new DeltaAnimation(keyframe, List.copyOf(deltas), width, height, imageType);
+	}
+
+	private static void readPixels(BufferedImage source, int imageType, int[] pixels) {
+		BufferedImage frame = new BufferedImage(source.getWidth(), source.getHeight(), imageType);
+		Graphics2D g = frame.createGraphics();
+		try {
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(source, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		System.arraycopy(((DataBufferInt) frame.getRaster().getDataBuffer()).getData(), 0, pixels, 0, pixels.length);
+	}
+
+	/**
+	 * Finds the tiles that differ between the reconstructed previous frame and
+	 * the next one, merges the dirty tiles of a row into rectangles and updates
+	 * the reference with them. Comparing against the reconstruction rather than
+	 * the source keeps the error bounded by the tolerance.
+	 */
+	private static List<Patch> diff(int[] reference, int[] next, int width, int height) {
+		List<Patch> patches = new ArrayList<>();
+		for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+			int tileHeight = Math.min(TILE_SIZE, height - tileY);
+			int runStart = -1;
+			for (int tileX = 0; tileX <= width; tileX += TILE_SIZE) {
+				boolean dirty = tileX < width
+						&& isDirty(reference, next, width, tileX, tileY, Math.min(TILE_SIZE, width - tileX), tileHeight);
+				if (dirty && runStart < 0) {
+					runStart = tileX;
+				} else if (!dirty && runStart >= 0) {
+					int runEnd = Math.min(tileX, width);
+					patches.add(copy(reference, next, width, runStart, tileY, runEnd - runStart, tileHeight));
+					runStart = -1;
+				}
+			}
+		}
+		return List.copyOf(patches);
+	}
+
+	private static boolean isDirty(int[] reference, int[] next, int width, int x, int y, int w, int h) {
+		for (int row = y; row < y + h; row++) {
+			int offset = row * width + x;
+			for (int i = offset; i < offset + w; i++) {
+				if (reference[i] != next[i] && distance(reference[i], next[i]) > TOLERANCE) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static int distance(int a, int b) {
+		int alpha = Math.abs((a >>> 24) - (b >>> 24));
+		int red = Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF));
+		int green = Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF));
+		int blue = Math.abs((a & 0xFF) - (b & 0xFF));
+		return Math.max(Math.max(alpha, red), Math.max(green, blue));
+	}
+
+	private static Patch copy(int[] reference, int[] next, int width, int x, int y, int w, int h) {
+		int[] pixels = new int[w * h];
+		for (int row = 0; row < h; row++) {
+			int offset = (y + row) * width + x;
+			System.arraycopy(next, offset, pixels, row * w, w);
+			System.arraycopy(next, offset, reference, offset, w);
+		}
+		return new Patch(x, y, w, h, pixels);
+	}
+
+	@Override
+	public int frameCount() {
+		return deltas.size() + 1;
+	}
+
+	/**
+	 * Returns the frame at the given index.
+	 * Playing forward only applies the patches since the previous frame, going
+	 * back restarts from the keyframe. The same image is reused for every frame,
+	 * it is only valid until the next call.
+	 */
+	@Override
+	public BufferedImage frame(int index) {
+		Objects.checkIndex(index, frameCount());
+		if (index < canvasIndex || canvasIndex < 0) {
+			System.arraycopy(keyframe, 0, canvasPixels, 0, keyframe.length);
+			canvasIndex = 0;
+		}
+		for (; canvasIndex < index; canvasIndex++) {
+			for (Patch patch : deltas.get(canvasIndex)) {
+				for (int row = 0; row < patch.height; row++) {
+					System.arraycopy(patch.pixels, row * patch.width, canvasPixels, (patch.y + row) * width + patch.x,
+							patch.width);
+				}
+			}
+		}
+		return canvas;
+	}
+
+	/**
+	 * @return number of bytes used by the keyframe and the patches
+	 */
+	public long encodedBytes() {
+		long pixels = keyframe.length;
+		for (List<Patch> delta : deltas) {
+			for (Patch patch : delta) {
+				pixels += patch.pixels.length;
+			}
+		}
+		return pixels * Integer.BYTES;
+	}
+}
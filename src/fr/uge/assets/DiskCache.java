@@ -0,0 +1,358 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Directory of images already decoded and resampled, stored as raw pixels.
+ * A file is named after the hash of the content of the source image and the
+ * size it was resampled to, so a modified image or another screen size never
+ * reads stale pixels. Reading a cached image is a sequential memory-mapped
+ * copy, with no decoding nor scaling.
+ *
+ * <p>The hash of each source image is kept in an index with the size and the
+ * modification time of the file, and computed again when one of them
+ * changes. When the budget is reached, the files read the longest time ago
+ * are deleted first, like the files of another screen size.
+ *
+ * <p>File layout (big endian): magic, version, width, height, image type, then
+ * {@code width * height} ints. Index layout: one source per line, tab
+ * separated: {@code path bytes modified hash}, the last line of a path wins.
+ */
+public final class DiskCache {
+
+	static final int MAGIC = 0x42504849; // "BPHI"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 5 * Integer.BYTES;
+	static final String INDEX_FILE = "sources.index";
+	private static final String EXTENSION = ".raw";
+
+	/**
+	 * Hash of the content of a source image, valid while the file keeps its
+	 * size and modification time.
+	 */
+	private record Source(long bytes, long modified, String hash) {
+	}
+
+	private final Path directory;
+	private final Path dataFolder;
+	private final Path index;
+	private final long budget;
+	private final AtomicLong usedBytes = new AtomicLong();
+	private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a cache. If the files already in the directory exceed the budget,
+	 * the oldest ones are deleted.
+	 *
+	 * @param directory  directory of the cached files, created if needed
+	 * @param dataFolder folder of the source images
+	 * @param budget     maximum number of bytes written in the directory
+	 */
+	public DiskCache(Path directory, Path dataFolder, long budget) {
+		this.directory = Objects.requireNonNull(directory);
+		this.dataFolder = Objects.requireNonNull(dataFolder);
+		if (budget <= 0)
+			throw new IllegalArgumentException("Invalid budget: " + budget);
+		this.budget = budget;
+		this.index = directory.resolve(INDEX_FILE);
+		try {
+			Files.createDirectories(directory);
+			try (Stream<Path> files = Files.list(directory)) {
+				usedBytes.set(files.filter(DiskCache::isCacheFile).mapToLong(DiskCache::sizeOrZero).sum());
+			}
+			// the files being written when a previous launch stopped
+			try (Stream<Path> files = Files.list(directory)) {
+				for (Path file : files.filter(file -> file.getFileName().toString().endsWith(".tmp")).toList()) {
+					Files.deleteIfExists(file);
+				}
+			}
+			readIndex();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to open cache directory: " + directory, e);
+		}
+		if (usedBytes.get() > budget) {
+			evict(0);
+		}
+	}
+
+	/**
+	 * Creates a cache in the directory given by the {@code backpackhero.diskcache.dir}
+	 * system property, {@code ./cache} by default, limited to
+	 * {@code backpackhero.diskcache.mb} megabytes, 4 GB by default.
+	 *
+	 * @return the cache
+	 */
+	public static DiskCache withDefaultDirectory() {
+		Path directory = Path.of(System.getProperty("backpackhero.diskcache.dir", "./cache"));
+		long megabytes = Long.getLong("backpackhero.diskcache.mb", 4096);
+		return new DiskCache(directory, AssetLoader.DATA_FOLDER, megabytes * 1024 * 1024);
+	}
+
+	private static boolean isCacheFile(Path file) {
+		return file.getFileName().toString().endsWith(EXTENSION);
+	}
+
+	private static long sizeOrZero(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Reads an image from the cache.
+	 *
+	 * @param fileName path of the source image, relative to the data folder
+	 * @param width    width the image was resampled to
+	 * @param height   height the image was resampled to
+	 * @return the image, or null if it is not in the cache
+	 */
+	public BufferedImage read(String fileName, int width, int height) {
+		Path file = fileOf(fileName, width, height);
+		if (file == null || !Files.isRegularFile(file)) {
+			return null;
+		}
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getInt() != width || buffer.getInt() != height) {
+				return null;
+			}
+			int imageType = buffer.getInt();
+			if (!isSupported(imageType) || buffer.remaining() != width * height * Integer.BYTES) {
+				return null;
+			}
+			BufferedImage image = new BufferedImage(width, height, imageType);
+			buffer.asIntBuffer().get(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+			touch(file);
+			return image;
+		} catch (IOException e) {
+			System.out.println("Warning : unreadable cache file " + file + " : " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the size of a source image as recorded in the index when its
+	 * hash was last checked, without reading the file system.
+	 *
+	 * @param fileName path of the source image, relative to the data folder
+	 * @return the size in bytes, or 0 if the source is not in the index
+	 */
+	public long sourceBytes(String fileName) {
+		Source source = sources.get(fileName);
+		return source == null ? 0 : source.bytes();
+	}
+
+	/**
+	 * Writes an image in the cache. Images whose pixels are not stored as ints
+	 * are not cached, nor images larger than the budget; the oldest files are
+	 * deleted to make room for the others. The file is written under a
+	 * temporary name then renamed, so a reader never sees a partial file.
+	 *
+	 * @param fileName path of the source image, relative to the data folder
+	 * @param image    the image resampled to its drawn size
+	 */
+	public void write(String fileName, BufferedImage image) {
+		if (!isSupported(image.getType())) {
+			return;
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		long size = HEADER_SIZE + (long) width * height * Integer.BYTES;
+		if (size > budget) {
+			return;
+		}
+		if (usedBytes.addAndGet(size) > budget) {
+			usedBytes.addAndGet(-size);
+			if (!evict(size)) {
+				return;
+			}
+			usedBytes.addAndGet(size);
+		}
+
+		Path file = fileOf(fileName, width, height);
+		if (file == null) {
+			usedBytes.addAndGet(-size);
+			return;
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+		try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(image.getType());
+			buffer.asIntBuffer().put(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+			buffer.position(0).limit((int) size);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			usedBytes.addAndGet(-size);
+			System.out.println("Warning : unable to write cache file " + file + " : " + e.getMessage());
+			return;
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			usedBytes.addAndGet(-size);
+			System.out.println("Warning : unable to write cache file " + file + " : " + e.getMessage());
+		}
+	}
+
+	private static boolean isSupported(int imageType) {
+		return imageType == BufferedImage.TYPE_INT_RGB || imageType == BufferedImage.TYPE_INT_ARGB
+				|| imageType == BufferedImage.TYPE_INT_ARGB_PRE;
+	}
+
+	/**
+	 * @return the cache file of an image, or null if the source cannot be read
+	 */
+	private Path fileOf(String fileName, int width, int height) {
+		String hash = hashOf(fileName);
+		if (hash == null)
+			return null;
+		return directory.resolve(hash + "-" + width + "x" + height + ".raw");
+	}
+
+	/**
+	 * Returns the hash of the content of a source image. The hash of the index
+	 * is trusted while the file keeps its size and modification time,
+	 * otherwise the file is read again and the index updated.
+	 *
+	 * @return the hash, or null if the source cannot be read
+	 */
+	private String hashOf(String fileName) {
+		Path file = dataFolder.resolve(fileName);
+		try {
+			long bytes = Files.size(file);
+			long modified = Files.getLastModifiedTime(file).toMillis();
+			Source source = sources.get(fileName);
+			if (source != null && source.bytes() == bytes && source.modified() == modified) {
+				return source.hash();
+			}
+			source = new Source(bytes, modified, AssetManifest.hashOf(file));
+			sources.put(fileName, source);
+			appendToIndex(fileName, source);
+			return source.hash();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void readIndex() throws IOException {
+		if (!Files.isRegularFile(index)) {
+			return;
+		}
+		List<String> lines = Files.readAllLines(index);
+		for (String line : lines) {
+			String[] fields = line.split("\t");
+			if (fields.length != 4) {
+				continue;
+			}
+			try {
+				sources.put(fields[0], new Source(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+			} catch (NumberFormatException e) {
+				// a line cut by a crash, the source is hashed again
+			}
+		}
+		// the lines of the sources hashed again are dropped
+		if (lines.size() > sources.size()) {
+			List<String> compacted = new ArrayList<>();
+			sources.forEach((path, source) -> compacted.add(indexLine(path, source)));
+			Files.write(index, compacted);
+		}
+	}
+
+	private synchronized void appendToIndex(String fileName, Source source) {
+		try {
+			Files.writeString(index, indexLine(fileName, source) + "\n", StandardOpenOption.CREATE,
+					StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			System.out.println("Warning : unable to write cache index " + index + " : " + e.getMessage());
+		}
+	}
+
+	private static String indexLine(String fileName, Source source) {
+		return fileName + "\t" + source.bytes() + "\t" + source.modified() + "\t" + source.hash();
+	}
+
+	/**
+	 * Marks a cache file as just read, the files read the longest time ago are
+	 * deleted first.
+	 */
+	private static void touch(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// the file is only deleted sooner
+		}
+	}
+
+	/**
+	 * Deletes the cache files read the longest time ago until there is room
+	 * for a new file.
+	 *
+	 * @param size number of bytes of the new file
+	 * @return false if the directory cannot be made small enough
+	 */
+	private synchronized boolean evict(long size) {
+		if (usedBytes.get() + size <= budget) {
+			return true;
+		}
+		List<Path> files;
+		try (Stream<Path> list = Files.list(directory)) {
+			files = list.filter(DiskCache::isCacheFile)
+					.sorted(Comparator.comparingLong(DiskCache::modifiedOrZero)).toList();
+		} catch (IOException e) {
+			return false;
+		}
+		for (Path file : files) {
+			if (usedBytes.get() + size <= budget) {
+				break;
+			}
+			long fileSize = sizeOrZero(file);
+			try {
+				Files.deleteIfExists(file);
+				usedBytes.addAndGet(-fileSize);
+			} catch (IOException e) {
+				// a file in use, the next one is deleted instead
+			}
+		}
+		return usedBytes.get() + size <= budget;
+	}
+
+	private static long modifiedOrZero(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return number of bytes used by the cached files
+	 */
+	public long usedBytes() {
+		return usedBytes.get();
+	}
+}
@@ -0,0 +1,173 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Memory-bounded cache of decoded images.
+ * Images belong to a group (the frames of an animation, the backgrounds, the
+ * weapons...). When the budget is exceeded the least recently used group is
+ * evicted as a whole, so an animation that has not been played for a while is
+ * released entirely instead of losing a few frames here and there. The group
+ * that is being filled only loses its own oldest images.
+ */
+public final class ImageCache {
+
+	/**
+	 * Counters of the cache.
+	 *
+	 * @param hits      lookups that found their image
+	 * @param misses    lookups that did not
+	 * @param evictions images released to respect the budget
+	 * @param usedBytes memory held by the cached images
+	 * @param budget    maximum memory the cache may hold
+	 */
+	public record Stats(long hits, long misses, long evictions, long usedBytes, long budget) {
+	}
+
+	private static final class Group {
+		private final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+		private long bytes;
+	}
+
+	private final long budget;
+	private final LinkedHashMap<String, Group> groups = new LinkedHashMap<>(16, 0.75f, true);
+	private long usedBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param budget maximum number of bytes of pixels kept in memory
+	 */
+	public ImageCache(long budget) {
+		if (budget <= 0)
+			throw new IllegalArgumentException("Invalid budget: " + budget);
+		this.budget = budget;
+	}
+
+	/**
+	 * Creates a cache whose budget comes from the {@code backpackhero.cache.mb}
+	 * system property, or a quarter of the maximum heap when it is not set.
+	 * The budget is never below the memory of the images that are drawn on
+	 * every screen, known before decoding them from the manifest, so they do
+	 * not evict each other.
+	 *
+	 * @param reserved number of bytes of pixels of the images always drawn
+	 * @return the cache
+	 */
+	public static ImageCache withDefaultBudget(long reserved) {
+		if (reserved < 0)
+			throw new IllegalArgumentException("Invalid reserved size: " + reserved);
+		long megabytes = Long.getLong("backpackhero.cache.mb", -1);
+		long budget = megabytes > 0 ? megabytes * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 4;
+		return new ImageCache(Math.max(budget, reserved));
+	}
+
+	/**
+	 * Looks for an image.
+	 *
+	 * @param group group of the image
+	 * @param key   key of the image
+	 * @return the image, or null if it is not in the cache
+	 */
+	public synchronized BufferedImage get(String group, String key) {
+		Objects.requireNonNull(group);
+		Objects.requireNonNull(key);
+		Group entry = groups.get(group);
+		BufferedImage image = entry == null ? null : entry.images.get(key);
+		if (image == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return image;
+	}
+
+	/**
+	 * Adds an image, evicting the least recently used ones if needed.
+	 *
+	 * @param group group of the image
+	 * @param key   key of the image
+	 * @param image the image
+	 */
+	public synchronized void put(String group, String key, BufferedImage image) {
+		Objects.requireNonNull(group);
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(image);
+		Group entry = groups.computeIfAbsent(group, g -> new Group());
+		BufferedImage previous = entry.images.put(key, image);
+		if (previous != null) {
+			release(entry, previous);
+		}
+		long size = sizeOf(image);
+		entry.bytes += size;
+		usedBytes += size;
+		evict(group, key);
+	}
+
+	/**
+	 * Removes all the images of a group.
+	 *
+	 * @param group the group
+	 */
+	public synchronized void invalidate(String group) {
+		Group entry = groups.remove(group);
+		if (entry != null) {
+			usedBytes -= entry.bytes;
+		}
+	}
+
+	/**
+	 * @return the current counters
+	 */
+	public synchronized Stats stats() {
+		return new Stats(hits, misses, evictions, usedBytes, budget);
+	}
+
+	private void evict(String currentGroup, String currentKey) {
+		Iterator<Map.Entry<String, Group>> groupIterator = groups.entrySet().iterator();
+		while (usedBytes > budget && groupIterator.hasNext()) {
+			Map.Entry<String, Group> eldest = groupIterator.next();
+			if (eldest.getKey().equals(currentGroup)) {
+				continue;
+			}
+			usedBytes -= eldest.getValue().bytes;
+			evictions += eldest.getValue().images.size();
+			groupIterator.remove();
+		}
+
+		Group current = groups.get(currentGroup);
+		Iterator<Map.Entry<String, BufferedImage>> imageIterator = current.images.entrySet().iterator();
+		while (usedBytes > budget && imageIterator.hasNext()) {
+			Map.Entry<String, BufferedImage> eldest = imageIterator.next();
+			if (eldest.getKey().equals(currentKey)) {
+				continue;
+			}
+			imageIterator.remove();
+			release(current, eldest.getValue());
+			evictions++;
+		}
+	}
+
+	private void release(Group group, BufferedImage image) {
+		long size = sizeOf(image);
+		group.bytes -= size;
+		usedBytes -= size;
+	}
+
+	/**
+	 * @param image an image
+	 * @return the number of bytes used by its pixels
+	 */
+	static long sizeOf(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+	}
+}
@@ -0,0 +1,41 @@
+package fr.uge.assets;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted for each image read by the {@link AssetLoader}.
+ * The duration of the event is the time spent decoding, scaling and caching
+ * the image, and the recorder adds the thread that did it.
+ */
+@Name("fr.uge.assets.ImageLoad")
+@Label("Image Load")
+@Category({ "BackPack Hero", "Assets" })
+@Description("An image read from the data folder or from the disk cache")
+final class ImageLoadEvent extends Event {
+
+	@Label("Path")
+	@Description("Path relative to the data folder")
+	String path;
+
+	@Label("Source")
+	@Description("decoded or disk")
+	String source;
+
+	@Label("File Size")
+	@DataAmount
+	long fileSize;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Pixel Format")
+	String pixelFormat;
+}
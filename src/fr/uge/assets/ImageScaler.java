@@ -0,0 +1,62 @@
+package fr.uge.assets;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+/**
+ * Resamples images once, at load time, to the size they are drawn at.
+ * The result uses the pixel format of the screen so drawing it is a plain copy.
+ */
+public final class ImageScaler {
+
+	private ImageScaler() {
+	}
+
+	/**
+	 * Returns an image of the given size in a format compatible with the screen.
+	 *
+	 * @param source the decoded image
+	 * @param width  width it is drawn at
+	 * @param height height it is drawn at
+	 * @return the resampled image, or the source if nothing needs to change
+	 */
+	public static BufferedImage scale(BufferedImage source, int width, int height) {
+		Objects.requireNonNull(source);
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+		int transparency = source.getColorModel().getTransparency();
+		BufferedImage target = createCompatibleImage(width, height, transparency);
+		if (source.getWidth() == width && source.getHeight() == height
+				&& source.getColorModel().equals(target.getColorModel())) {
+			return source;
+		}
+
+		Graphics2D g = target.createGraphics();
+		try {
+			g.setComposite(AlphaComposite.Src);
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(source, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return target;
+	}
+
+	private static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+		if (!GraphicsEnvironment.isHeadless()) {
+			GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration();
+			return configuration.createCompatibleImage(width, height, transparency);
+		}
+		int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+		return new BufferedImage(width, height, type);
+	}
+}
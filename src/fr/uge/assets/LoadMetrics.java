@@ -0,0 +1,174 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counters of the asset loading: how many images were read per folder, from
+ * where, in which pixel format, by which thread and how long it took.
+ * The same measures are emitted as flight recorder events, this registry
+ * keeps the totals for the summary printed at the end of the startup.
+ */
+public final class LoadMetrics {
+
+	/** Source of an image decoded from its file */
+	public static final String DECODED = "decoded";
+
+	/** Source of an image read from the {@link DiskCache} */
+	public static final String DISK = "disk";
+
+	private static final class FolderStats {
+		private int decoded;
+		private int fromDisk;
+		private long fileBytes;
+		private long nanos;
+		private long maxNanos;
+		private String slowest;
+	}
+
+	/**
+	 * A step of the loading being measured.
+	 */
+	public final class Phase {
+		private final String name;
+		private final LoadPhaseEvent event = new LoadPhaseEvent();
+		private final long start = System.nanoTime();
+
+		private Phase(String name) {
+			this.name = name;
+			event.begin();
+		}
+
+		/**
+		 * Ends the step and records its duration.
+		 */
+		public void end() {
+			long nanos = System.nanoTime() - start;
+			event.end();
+			if (event.shouldCommit()) {
+				event.phase = name;
+				event.commit();
+			}
+			synchronized (LoadMetrics.this) {
+				phases.merge(name, nanos, Long::sum);
+			}
+		}
+	}
+
+	private final Map<String, FolderStats> folders = new TreeMap<>();
+	private final Map<String, Integer> pixelFormats = new TreeMap<>();
+	private final Map<String, Integer> threads = new TreeMap<>();
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+	private final AtomicBoolean printed = new AtomicBoolean();
+
+	/**
+	 * Records an image read by the loader and emits its event.
+	 *
+	 * @param event    the event started before reading the image
+	 * @param path     path relative to the data folder
+	 * @param source   {@link #DECODED} or {@link #DISK}
+	 * @param fileSize size of the source file
+	 * @param nanos    time spent reading the image
+	 * @param image    the image
+	 */
+	void record(ImageLoadEvent event, String path, String source, long fileSize, long nanos, BufferedImage image) {
+		Objects.requireNonNull(path);
+		Objects.requireNonNull(image);
+		String format = pixelFormat(image.getType());
+		if (event.shouldCommit()) {
+			event.path = path;
+			event.source = source;
+			event.fileSize = fileSize;
+			event.width = image.getWidth();
+			event.height = image.getHeight();
+			event.pixelFormat = format;
+			event.commit();
+		}
+
+		synchronized (this) {
+			FolderStats stats = folders.computeIfAbsent(folderOf(path), f -> new FolderStats());
+			if (source.equals(DISK)) {
+				stats.fromDisk++;
+			} else {
+				stats.decoded++;
+			}
+			stats.fileBytes += fileSize;
+			stats.nanos += nanos;
+			if (nanos > stats.maxNanos) {
+				stats.maxNanos = nanos;
+				stats.slowest = path;
+			}
+			pixelFormats.merge(format, 1, Integer::sum);
+			threads.merge(Thread.currentThread().getName(), 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Starts measuring a step of the loading.
+	 *
+	 * @param name name of the step
+	 * @return the step, to end once it is done
+	 */
+	public Phase begin(String name) {
+		return new Phase(Objects.requireNonNull(name));
+	}
+
+	private static String folderOf(String path) {
+		int slash = path.lastIndexOf('/');
+		return slash < 0 ? "." : path.substring(0, slash);
+	}
+
+	private static String pixelFormat(int imageType) {
+		return switch (imageType) {
+		case BufferedImage.TYPE_INT_RGB -> "INT_RGB";
+		case BufferedImage.TYPE_INT_ARGB -> "INT_ARGB";
+		case BufferedImage.TYPE_INT_ARGB_PRE -> "INT_ARGB_PRE";
+		case BufferedImage.TYPE_INT_BGR -> "INT_BGR";
+		case BufferedImage.TYPE_3BYTE_BGR -> "3BYTE_BGR";
+		case BufferedImage.TYPE_4BYTE_ABGR -> "4BYTE_ABGR";
+		case BufferedImage.TYPE_BYTE_GRAY -> "BYTE_GRAY";
+		case BufferedImage.TYPE_BYTE_INDEXED -> "BYTE_INDEXED";
+		case BufferedImage.TYPE_CUSTOM -> "CUSTOM";
+		default -> "TYPE_" + imageType;
+		};
+	}
+
+	/**
+	 * Builds the report of the loading: one line per folder, slowest first,
+	 * then the pixel formats, the threads and the measured steps.
+	 *
+	 * @return the report
+	 */
+	public synchronized String summary() {
+		var builder = new StringBuilder("===== Asset loading =====\n");
+		List<Map.Entry<String, FolderStats>> sorted = new ArrayList<>(folders.entrySet());
+		sorted.sort(Comparator.comparingLong((Map.Entry<String, FolderStats> e) -> e.getValue().nanos).reversed());
+		for (var entry : sorted) {
+			FolderStats stats = entry.getValue();
+			int count = stats.decoded + stats.fromDisk;
+			builder.append(String.format("%-20s %4d images (%d decoded, %d from disk) %8.1f MB %8.0f ms, avg %6.1f ms, slowest %s%n",
+					entry.getKey(), count, stats.decoded, stats.fromDisk, stats.fileBytes / 1e6, stats.nanos / 1e6,
+					stats.nanos / 1e6 / count, stats.slowest));
+		}
+		builder.append("Pixel formats : ").append(pixelFormats).append('\n');
+		builder.append("Threads : ").append(threads).append('\n');
+		phases.forEach((name, nanos) -> builder.append(String.format("Phase %-28s %8.0f ms%n", name, nanos / 1e6)));
+		return builder.toString();
+	}
+
+	/**
+	 * Prints the report, only the first time it is called.
+	 */
+	public void printSummaryOnce() {
+		if (printed.compareAndSet(false, true)) {
+			System.out.print(summary());
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package fr.uge.assets;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning a step of the asset loading, for example
+ * the images waited for before the game starts.
+ */
+@Name("fr.uge.assets.LoadPhase")
+@Label("Asset Load Phase")
+@Category({ "BackPack Hero", "Assets" })
+@Description("A step of the asset loading")
+final class LoadPhaseEvent extends Event {
+
+	@Label("Phase")
+	String phase;
+}
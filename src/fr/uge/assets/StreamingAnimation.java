@@ -0,0 +1,105 @@
+package fr.uge.assets;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Animation whose frames are decoded on demand.
+ * Only a small window of frames ahead of the playhead is referenced by the
+ * animation: the frames that have been played are released and the next ones
+ * are decoded in the background. The window wraps around the end of the
+ * animation so the first frames are ready the next time it is played.
+ * Released frames stay in the {@link ImageCache} of the loader until its
+ * budget requires them to be evicted.
+ */
+public final class StreamingAnimation implements Animation {
+
+	private final AssetLoader loader;
+	private final String group;
+	private final List<String> fileNames;
+	private final int prefetch;
+	private final int width;
+	private final int height;
+	private final Map<Integer, CompletableFuture<BufferedImage>> frames = new ConcurrentHashMap<>();
+	private volatile BufferedImage lastFrame;
+
+	/**
+	 * Creates a streaming animation and starts decoding its first frames.
+	 *
+	 * @param loader    loader used to decode the frames
+	 * @param group     cache group of the frames
+	 * @param fileNames frame files, relative to the data folder
+	 * @param prefetch  number of frames decoded ahead of the playhead
+	 * @param width     width the frames are drawn at
+	 * @param height    height the frames are drawn at
+	 */
+	public StreamingAnimation(AssetLoader loader, String group, List<String> fileNames, int prefetch, int width,
+			int height) {
+		this.loader = Objects.requireNonNull(loader);
+		this.group = Objects.requireNonNull(group);
+		this.fileNames = List.copyOf(fileNames);
+		if (this.fileNames.isEmpty())
+			throw new IllegalArgumentException("Animation without frames");
+		if (prefetch < 0)
+			throw new IllegalArgumentException("Invalid prefetch: " + prefetch);
+		this.prefetch = Math.min(prefetch, this.fileNames.size() - 1);
+		this.width = width;
+		this.height = height;
+		schedule(0);
+	}
+
+	@Override
+	public int frameCount() {
+		return fileNames.size();
+	}
+
+	/**
+	 * Returns the frame at the given index.
+	 * If the frame is still being decoded the previous frame is returned, the
+	 * caller only waits when nothing has been displayed yet.
+	 */
+	@Override
+	public BufferedImage frame(int index) {
+		Objects.checkIndex(index, fileNames.size());
+		schedule(index);
+
+		CompletableFuture<BufferedImage> pending = frames.get(index);
+		if (pending.isDone() || lastFrame == null) {
+			lastFrame = AssetLoader.join(pending);
+		}
+		return lastFrame;
+	}
+
+	/**
+	 * The animation is ready once its first frame is decoded. Until then,
+	 * {@link #frame(int)} would block.
+	 */
+	@Override
+	public boolean isReady() {
+		if (lastFrame != null)
+			return true;
+		CompletableFuture<BufferedImage> first = frames.get(0);
+		return first != null && first.isDone() && !first.isCompletedExceptionally();
+	}
+
+	/**
+	 * Decodes the frames of the window starting at the playhead and releases
+	 * the others.
+	 */
+	private void schedule(int playhead) {
+		frames.keySet().removeIf(index -> !isInWindow(index, playhead));
+		for (int i = 0; i <= prefetch; i++) {
+			int index = (playhead + i) % fileNames.size();
+			frames.computeIfAbsent(index, k -> loader.load(group, fileNames.get(k), width, height));
+		}
+	}
+
+	private boolean isInWindow(int index, int playhead) {
+		int distance = Math.floorMod(index - playhead, fileNames.size());
+		return distance <= prefetch;
+	}
+}
@@ -1,7 +1,12 @@
 package fr.uge.backpack;
 
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -11,22 +16,68 @@ import fr.uge.items.Item;
 /**
  * Class for the bag of hero.
  * It is a grid where we put items.
+ * Besides the grid, each row keeps its unlocked and occupied cells as the
+ * bits of a {@code long}, so a placement is checked with a few masks
+ * instead of cell by cell. A bag is at most 64 cells wide.
+ * The cells of each item are also indexed by the item itself, compared by
+ * identity, so finding, removing or replacing an item only looks at its
+ * own cells. The stackable items are indexed by name, so the quantity of
+ * gold is found without looking at the grid.
  */
 public class BackPack {
 
 	private final int width;
 	private final int height;
 	private final Item[][] grid;
-	private final boolean[][] unlocked;
+	private final long[] unlocked;
+	private final long[] occupied;
+	private final Map<Item, Placement> placements = new IdentityHashMap<>();
+	/** For each name, the first stack with that name in reading order */
+	private final Map<String, Item> stacks = new HashMap<>();
+	private int version;
+	private Item maskedItem;
+	private ItemMask itemMask;
 
 	public BackPack(int width, int height) {
-		if (width <= 0 || height <= 0)
+		if (width <= 0 || height <= 0 || width > Long.SIZE)
 			throw new IllegalArgumentException();
 
 		this.width = width;
 		this.height = height;
 		this.grid = new Item[height][width];
-		this.unlocked = new boolean[height][width];
+		this.unlocked = new long[height];
+		this.occupied = new long[height];
+	}
+
+	/**
+	 * Cells of an item in the bag.
+	 *
+	 * @param x    column of the first cell of the item, in reading order
+	 * @param y    row of the first cell of the item
+	 * @param rows the cells of the item in each row of the bag, one bit per
+	 *             column
+	 */
+	private record Placement(int x, int y, long[] rows) {
+	}
+
+	/**
+	 * Returns a copy of the bag with the same cells, items and version. The copy
+	 * does not follow the later changes of the bag.
+	 *
+	 * @return the copy
+	 */
+	public BackPack copy() {
+		var copy = new BackPack(width, height);
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(grid[y], 0, copy.grid[y], 0, width);
+		}
+		System.arraycopy(unlocked, 0, copy.unlocked, 0, height);
+		System.arraycopy(occupied, 0, copy.occupied, 0, height);
+		placements.forEach((item, placement) -> copy.placements.put(item,
+				new Placement(placement.x, placement.y, placement.rows.clone())));
+		copy.stacks.putAll(stacks);
+		copy.version = version;
+		return copy;
 	}
 
 	public int width() {
@@ -41,14 +92,42 @@ public class BackPack {
 		return grid;
 	}
 
+	/**
+	 * Returns a counter incremented each time the content or the unlocked cells
+	 * change, so the view can tell whether the bag must be redrawn.
+	 *
+	 * @return the current version
+	 */
+	public int version() {
+		return version;
+	}
+
 	public boolean isUnlocked(int x, int y) {
-		return unlocked[y][x];
+		Objects.checkIndex(x, width);
+		return (unlocked[y] & 1L << x) != 0;
+	}
+
+	/**
+	 * Returns the cells of a row that are unlocked and empty, one bit per
+	 * column.
+	 */
+	long freeCells(int y) {
+		return unlocked[y] & ~occupied[y];
+	}
+
+	/**
+	 * Tells if the bag has a stack with the given name, where a stackable item
+	 * with that name is merged instead of taking a place.
+	 */
+	boolean hasStack(String name) {
+		return stacks.containsKey(name);
 	}
 
 	public void unlockCell(int x, int y) {
 		if (x < 0 || y < 0 || x >= width || y >= height)
 			throw new IllegalArgumentException();
-		unlocked[y][x] = true;
+		unlocked[y] |= 1L << x;
+		version++;
 	}
 
 	public void unlockCells(int[][] cells) {
@@ -61,25 +140,15 @@ public class BackPack {
 	 */
 	public boolean canPlace(Item item, int x, int y) {
 		Objects.requireNonNull(item);
+		ItemMask mask = maskOf(item);
+		if (!mask.fitsIn(x, y, width, height))
+			return false;
 
-		for (int dy = 0; dy < item.height(); dy++) {
-			for (int dx = 0; dx < item.width(); dx++) {
-
-				if (!item.occupies(dx, dy))
-					continue;
-
-				int gx = x + dx;
-				int gy = y + dy;
-
-				if (gx < 0 || gy < 0 || gx >= width || gy >= height)
-					return false;
-
-				if (!unlocked[gy][gx])
-					return false;
-
-				if (grid[gy][gx] != null)
-					return false;
-			}
+		long[] rows = mask.rows();
+		for (int dy = mask.top(); dy < mask.bottom(); dy++) {
+			int gy = y + dy;
+			if ((ItemMask.atColumn(rows[dy], x, width) & (~unlocked[gy] | occupied[gy])) != 0)
+				return false;
 		}
 		return true;
 	}
@@ -90,23 +159,16 @@ public class BackPack {
 	public Set<Item> blockingItems(Item item, int x, int y) {
 		Objects.requireNonNull(item);
 		Set<Item> result = new HashSet<>();
+		long[] rows = maskOf(item).rows();
 
-		for (int dy = 0; dy < item.height(); dy++) {
-			for (int dx = 0; dx < item.width(); dx++) {
-
-				if (!item.occupies(dx, dy))
-					continue;
-
-				int gx = x + dx;
-				int gy = y + dy;
-
-				if (gx < 0 || gy < 0 || gx >= width || gy >= height)
-					continue;
+		for (int dy = 0; dy < rows.length; dy++) {
+			int gy = y + dy;
+			if (gy < 0 || gy >= height)
+				continue;
 
-				Item existing = grid[gy][gx];
-				if (existing != null) {
-					result.add(existing);
-				}
+			// the cells out of the bag are dropped by the shift
+			for (long hits = ItemMask.atColumn(rows[dy], x, width) & occupied[gy]; hits != 0; hits &= hits - 1) {
+				result.add(grid[gy][Long.numberOfTrailingZeros(hits)]);
 			}
 		}
 		return result;
@@ -114,21 +176,126 @@ public class BackPack {
 	
 	public boolean canForcePlace(Item item, int x, int y) {
 		Objects.requireNonNull(item);
+		ItemMask mask = maskOf(item);
+		if (!mask.fitsIn(x, y, width, height))
+			return false;
 
-		for (int dy = 0; dy < item.height(); dy++) {
-			for (int dx = 0; dx < item.width(); dx++) {
+		long[] rows = mask.rows();
+		for (int dy = mask.top(); dy < mask.bottom(); dy++) {
+			if ((ItemMask.atColumn(rows[dy], x, width) & ~unlocked[y + dy]) != 0)
+				return false;
+		}
+		return true;
+	}
 
-				if (!item.occupies(dx, dy))
-					continue;
+	/**
+	 * Returns the mask of an item. The last mask is kept, since the same item
+	 * is often tried at many places in a row.
+	 */
+	private ItemMask maskOf(Item item) {
+		if (item != maskedItem) {
+			itemMask = ItemMask.of(item);
+			maskedItem = item;
+		}
+		return itemMask;
+	}
+
+	/**
+	 * Puts an item on its cells, the place must have been checked.
+	 */
+	private void fill(Item item, int x, int y) {
+		ItemMask mask = maskOf(item);
+		long[] rows = mask.rows();
+		for (int dy = mask.top(); dy < mask.bottom(); dy++) {
+			long cells = ItemMask.atColumn(rows[dy], x, width);
+			occupied[y + dy] |= cells;
+			index(item, y + dy, cells);
+			for (; cells != 0; cells &= cells - 1) {
+				grid[y + dy][Long.numberOfTrailingZeros(cells)] = item;
+			}
+		}
+		version++;
+	}
 
-				int gx = x + dx;
-				int gy = y + dy;
+	/**
+	 * Adds cells of a row to the cells of an item.
+	 */
+	private void index(Item item, int y, long cells) {
+		if (cells == 0)
+			return;
+		Placement placement = placements.get(item);
+		if (placement == null) {
+			placement = new Placement(Long.numberOfTrailingZeros(cells), y, new long[height]);
+			placements.put(item, placement);
+		} else if (y < placement.y || y == placement.y && Long.numberOfTrailingZeros(cells) < placement.x) {
+			placement = new Placement(Long.numberOfTrailingZeros(placement.rows[y] | cells), y, placement.rows);
+			placements.put(item, placement);
+		}
+		placement.rows[y] |= cells;
+		if (item.isStackable())
+			indexStack(item, placement);
+	}
+
+	/**
+	 * Makes a stack the stack of its name if it comes first in reading order.
+	 */
+	private void indexStack(Item item, Placement placement) {
+		Item first = stacks.get(item.name());
+		if (first != null && first != item) {
+			Placement other = placements.get(first);
+			if (other.y < placement.y || other.y == placement.y && other.x < placement.x)
+				return;
+		}
+		stacks.put(item.name(), item);
+	}
 
-				if (gx < 0 || gy < 0 || gx >= width || gy >= height)
-					return false;
+	/**
+	 * Removes a stack from the index, another stack with the same name takes its
+	 * place. The stack must be already removed from the placements.
+	 */
+	private void unindexStack(Item item) {
+		if (stacks.get(item.name()) != item)
+			return;
+		stacks.remove(item.name());
+		placements.forEach((other, placement) -> {
+			if (other.isStackable() && other.name().equals(item.name()))
+				indexStack(other, placement);
+		});
+	}
 
-				if (!unlocked[gy][gx])
-					return false;
+	/**
+	 * Puts another item on all the cells of an item, or empties them if the
+	 * new item is null. A stack replaced by a stack with the same name, when
+	 * its quantity changes, takes its placement and its rank among the stacks
+	 * of that name as they are.
+	 *
+	 * @return false if the item is not in the bag
+	 */
+	private boolean replace(Item oldItem, Item newItem) {
+		Placement placement = placements.remove(oldItem);
+		if (placement == null)
+			return false;
+		boolean moved = newItem != null && oldItem.isStackable() && newItem.isStackable()
+				&& oldItem.name().equals(newItem.name()) && !placements.containsKey(newItem);
+		if (moved) {
+			placements.put(newItem, placement);
+			if (stacks.get(oldItem.name()) == oldItem)
+				stacks.put(oldItem.name(), newItem);
+		} else if (oldItem.isStackable()) {
+			unindexStack(oldItem);
+		}
+		long[] rows = placement.rows;
+		for (int y = placement.y; y < height; y++) {
+			long cells = rows[y];
+			if (cells == 0)
+				continue;
+			if (newItem == null) {
+				occupied[y] &= ~cells;
+			} else if (!moved) {
+				index(newItem, y, cells);
+			}
+			for (; cells != 0; cells &= cells - 1) {
+				grid[y][Long.numberOfTrailingZeros(cells)] = newItem;
 			}
 		}
 		return true;
@@ -138,14 +305,7 @@ public class BackPack {
 		if (!canPlace(item, x, y))
 			return false;
 
-		for (int dy = 0; dy < item.height(); dy++) {
-			for (int dx = 0; dx < item.width(); dx++) {
-
-				if (!item.occupies(dx, dy))
-					continue;
-				grid[y + dy][x + dx] = item;
-			}
-		}
+		fill(item, x, y);
 		return true;
 	}
 	
@@ -156,91 +316,101 @@ public class BackPack {
 	 */
 	public boolean autoAdd(Item item) {
 		Objects.requireNonNull(item);
+		return placeAll(List.of(item)).isEmpty();
+	}
 
-		// Fusionner avec un stack existant
-		if (item.isStackable()) {
-			for (int y = 0; y < height; y++) {
-				for (int x = 0; x < width; x++) {
-					Item cell = grid[y][x];
-					if (cell != null && cell.isStackable() && cell.name().equals(item.name())) {
-						grid[y][x] = cell.addQuantity(item.quantity());
-						return true;
-					}
+	/**
+	 * Adds several items, each one as {@link #autoAdd(Item)} would: merged with
+	 * its stack, or in the first free place in reading order, as it is or
+	 * rotated. The free cells are read once for all the items, and all the
+	 * columns of a row are tried at once.
+	 *
+	 * @param items the items to add
+	 * @return the items that did not fit, in the given order
+	 */
+	public List<Item> placeAll(List<Item> items) {
+		Objects.requireNonNull(items);
+		var free = new long[height];
+		for (int y = 0; y < height; y++) {
+			free[y] = freeCells(y);
+		}
+		// the free cells only shrink, a shape that found no place never will;
+		// the masks are equal when their cells are
+		var full = new HashSet<ItemMask>();
+		var rejected = new ArrayList<Item>();
+		for (Item item : items) {
+			Objects.requireNonNull(item);
+			if (item.isStackable()) {
+				Item stack = stacks.get(item.name());
+				if (stack != null) {
+					if (replace(stack, stack.addQuantity(item.quantity())))
+						version++;
+					continue;
 				}
 			}
-		}
-
-
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (canPlace(item, x, y))
-					return place(item, x, y);
-				Item rotated = item.rotate();
-				if (canPlace(rotated, x, y))
-					return place(rotated, x, y);
+			Item rotated = item.rotate();
+			ItemMask mask = ItemMask.of(item);
+			ItemMask rotatedMask = ItemMask.of(rotated);
+			if (full.contains(mask) && full.contains(rotatedMask)
+					|| !addFirstFit(item, rotated, mask, rotatedMask, free)) {
+				full.add(mask);
+				full.add(rotatedMask);
+				rejected.add(item);
 			}
 		}
-		return false;
+		return rejected;
+	}
+
+	/**
+	 * Puts an item, or else its rotation, in the first place of the free cells
+	 * in reading order, and removes its cells from the free cells.
+	 *
+	 * @return false if neither fits
+	 */
+	private boolean addFirstFit(Item item, Item rotated, ItemMask mask, ItemMask rotatedMask, long[] free) {
+		ItemMask.Place place = ItemMask.firstFit(mask, rotatedMask, free, width);
+		if (place == null)
+			return false;
+		fill(place.rotated() ? rotated : item, place.x(), place.y());
+		return true;
 	}
 
 	public boolean remove(Item item) {
 		Objects.requireNonNull(item);
-		boolean removed = false;
-		for (int y = 0; y < height; y++)
-			for (int x = 0; x < width; x++)
-				if (grid[y][x] == item) {
-					grid[y][x] = null;
-					removed = true;
-				}
+		boolean removed = replace(item, null);
+		if (removed)
+			version++;
 		return removed;
 	}
 
 	public int getQuantity(String itemName) {
-		for (int y = 0; y < height; y++)
-			for (int x = 0; x < width; x++) {
-				Item item = grid[y][x];
-				if (item != null && item.isStackable() && item.name().equals(itemName))
-					return item.quantity();
-			}
-		return 0;
+		Item stack = stacks.get(itemName);
+		return stack == null ? 0 : stack.quantity();
 	}
 
 	public void addQuantity(String itemName, int amount) {
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				Item item = grid[y][x];
-				if (item != null && item.isStackable() && item.name().equals(itemName)) {
-					grid[y][x] = item.addQuantity(amount);
-					return;
-				}
-			}
+		Item stack = stacks.get(itemName);
+		if (stack != null) {
+			if (replace(stack, stack.addQuantity(amount)))
+				version++;
+			return;
 		}
 
 		autoAdd(new Gold(itemName, amount));
 	}
 
 	public void removeQuantity(String itemName, int amount) {
-		for (int y = 0; y < height; y++)
-			for (int x = 0; x < width; x++) {
-				Item item = grid[y][x];
-				if (item != null && item.isStackable() && item.name().equals(itemName)) {
-					if (item.quantity() < amount)
-						throw new IllegalStateException("Pas assez de " + itemName + " !");
-					grid[y][x] = item.addQuantity(-amount);
-					return;
-				}
-			}
-		throw new IllegalStateException("Pas assez de " + itemName + " !");
+		Item stack = stacks.get(itemName);
+		if (stack == null || stack.quantity() < amount)
+			throw new IllegalStateException("Pas assez de " + itemName + " !");
+		if (replace(stack, stack.addQuantity(-amount)))
+			version++;
 	}
 
 	public void updateItem(Item oldItem, Item newItem) {
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (grid[y][x] == oldItem) {
-					grid[y][x] = newItem;
-				}
-			}
-		}
+		// an item that is not in the bag changes nothing, the views keep their copy
+		if (replace(oldItem, newItem))
+			version++;
 	}
 
 	public void forcePlace(Item item, int x, int y) {
@@ -252,28 +422,47 @@ public class BackPack {
 		if (!blockingItems(item, x, y).isEmpty())
 			throw new IllegalStateException("Objets bloquants non résolus");
 
-		for (int dy = 0; dy < item.height(); dy++) {
-			for (int dx = 0; dx < item.width(); dx++) {
-
-				if (!item.occupies(dx, dy))
-					continue;
-				grid[y + dy][x + dx] = item;
-			}
-		}
+		fill(item, x, y);
 	}
 
 	public boolean contains(Item item) {
 		if (item == null)
 			return false;
 
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (grid[y][x] == item) {
-					return true;
-				}
+		return placements.containsKey(item);
+	}
+
+	/**
+	 * Returns the first cell of an item, in reading order.
+	 *
+	 * @param item the item
+	 * @return the cell, or null if the item is not in the bag
+	 */
+	public Point positionOf(Item item) {
+		Objects.requireNonNull(item);
+		Placement placement = placements.get(item);
+		return placement == null ? null : new Point(placement.x, placement.y);
+	}
+
+	/**
+	 * Returns the cells of an item, in reading order.
+	 *
+	 * @param item the item
+	 * @return the cells, empty if the item is not in the bag
+	 */
+	public List<Point> cellsOf(Item item) {
+		Objects.requireNonNull(item);
+		Placement placement = placements.get(item);
+		if (placement == null)
+			return List.of();
+
+		var cells = new ArrayList<Point>();
+		for (int y = placement.y; y < height; y++) {
+			for (long row = placement.rows[y]; row != 0; row &= row - 1) {
+				cells.add(new Point(Long.numberOfTrailingZeros(row), y));
 			}
 		}
-		return false;
+		return cells;
 	}
 
 }
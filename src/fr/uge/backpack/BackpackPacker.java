@@ -0,0 +1,373 @@
+package fr.uge.backpack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+import fr.uge.items.Item;
+
+/**
+ * Puts as many items as possible in the bag at once, for example all the
+ * items of a treasure chest.
+ *
+ * <p>Where {@link BackPack#autoAdd(Item)} puts each item in the first place
+ * it finds, the packer searches the places and the rotations of all the
+ * items together, with a branch and bound over the free cells of the bag.
+ * The search starts from the result of the first fit, so it never places
+ * fewer items, and it stops when its time budget is spent, keeping the best
+ * packing found so far.
+ *
+ * <p>The budget is a soft limit: the clock is read between the steps of the
+ * search, so a search can run over its budget by the time of one step, a few
+ * microseconds, besides the pauses of the garbage collector and of the system.
+ */
+public final class BackpackPacker {
+
+	/** Number of nodes of the search between two looks at the clock */
+	private static final int CLOCK_PERIOD = 32;
+
+	/**
+	 * Where to put an item.
+	 *
+	 * @param item the item, rotated if it must be
+	 * @param x    column of the item in the bag
+	 * @param y    row of the item in the bag
+	 */
+	public record Placement(Item item, int x, int y) {
+		public Placement {
+			Objects.requireNonNull(item);
+		}
+	}
+
+	/**
+	 * Result of a search.
+	 *
+	 * @param placements where to put the items that fit
+	 * @param placed     the items that fit, as given to the packer, in the order
+	 *                   of their placements
+	 * @param complete   true if the search ended before its budget, the packing
+	 *                   is then the best possible
+	 */
+	public record Plan(List<Placement> placements, List<Item> placed, boolean complete) {
+		public Plan {
+			placements = List.copyOf(placements);
+			placed = List.copyOf(placed);
+		}
+	}
+
+	/**
+	 * An item to place with its orientations and the places where each
+	 * orientation fits in the empty bag.
+	 */
+	private record Candidate(Item item, int area, Item[] orientations, ItemMask[] masks, int[][] places) {
+	}
+
+	private final long budgetNanos;
+
+	/**
+	 * Creates a packer.
+	 *
+	 * @param budgetNanos longest time of a search, in nanoseconds
+	 */
+	public BackpackPacker(long budgetNanos) {
+		if (budgetNanos <= 0)
+			throw new IllegalArgumentException("Invalid budget: " + budgetNanos);
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * Creates a packer whose budget comes from the
+	 * {@code backpackhero.packer.micros} system property, 1000 microseconds by
+	 * default.
+	 *
+	 * @return the packer
+	 */
+	public static BackpackPacker withDefaultBudget() {
+		return new BackpackPacker(Integer.getInteger("backpackhero.packer.micros", 1000) * 1000L);
+	}
+
+	/**
+	 * Puts as many items as possible in the bag. The stackable items whose
+	 * stack is in the bag, or comes with an item placed before them, are
+	 * merged into it, the other items are placed as found by
+	 * {@link #plan(BackPack, List)}.
+	 *
+	 * @param backpack the bag
+	 * @param items    the items to put in the bag
+	 * @return the items that are now in the bag, as given
+	 */
+	public List<Item> lootAll(BackPack backpack, List<Item> items) {
+		Objects.requireNonNull(backpack);
+		Objects.requireNonNull(items);
+		var looted = new ArrayList<Item>();
+		var others = new ArrayList<Item>();
+		var merged = new ArrayList<Item>();
+		var stackNames = new HashSet<String>();
+		for (Item item : items) {
+			if (!item.isStackable()) {
+				others.add(item);
+			} else if (backpack.hasStack(item.name()) || !stackNames.add(item.name())) {
+				merged.add(item);
+			} else {
+				others.add(item);
+			}
+		}
+		Plan plan = plan(backpack, others);
+		for (Placement placement : plan.placements()) {
+			if (!backpack.place(placement.item(), placement.x(), placement.y()))
+				throw new IllegalStateException("Placement impossible");
+		}
+		looted.addAll(plan.placed());
+		merged.removeIf(item -> !backpack.hasStack(item.name()));
+		backpack.placeAll(merged);
+		looted.addAll(merged);
+		return looted;
+	}
+
+	/**
+	 * Searches where to put the items, without changing the bag.
+	 *
+	 * @param backpack the bag
+	 * @param items    the items to place, none of them is in the bag
+	 * @return the placements that put the most items in the bag
+	 */
+	public Plan plan(BackPack backpack, List<Item> items) {
+		Objects.requireNonNull(backpack);
+		Objects.requireNonNull(items);
+		return new Search(backpack, items, System.nanoTime() + budgetNanos).run();
+	}
+
+	/**
+	 * Places the items one after the other in the first place they fit,
+	 * trying each item as it is and then rotated, like
+	 * {@link BackPack#autoAdd(Item)}, without changing the bag.
+	 *
+	 * @param backpack the bag
+	 * @param items    the items to place, none of them is in the bag
+	 * @return the placements of the first fit
+	 */
+	public static Plan firstFit(BackPack backpack, List<Item> items) {
+		Objects.requireNonNull(backpack);
+		Objects.requireNonNull(items);
+		long[] free = freeCells(backpack);
+		var placements = new ArrayList<Placement>();
+		var placed = new ArrayList<Item>();
+		for (Item item : items) {
+			Item rotated = item.rotate();
+			ItemMask.Place place = ItemMask.firstFit(ItemMask.of(item), ItemMask.of(rotated), free, backpack.width());
+			if (place != null) {
+				placements.add(new Placement(place.rotated() ? rotated : item, place.x(), place.y()));
+				placed.add(item);
+			}
+		}
+		return new Plan(placements, placed, true);
+	}
+
+	// ===================== BITMASKS =====================
+	private static long[] freeCells(BackPack backpack) {
+		var free = new long[backpack.height()];
+		for (int y = 0; y < free.length; y++) {
+			free[y] = backpack.freeCells(y);
+		}
+		return free;
+	}
+
+	// ===================== SEARCH =====================
+	/**
+	 * State of one search. The items are tried from the largest to the
+	 * smallest, each one in each of its places or left out. A branch is cut
+	 * when even the smallest remaining items could not beat the best packing.
+	 */
+	private static final class Search {
+		private final int width;
+		private final long deadline;
+		private final long[] free;
+		private final Candidate[] candidates;
+		/** Place chosen for each candidate, index of the orientation and of the place, or -1 */
+		private final int[] chosenOrientation;
+		private final int[] chosenPlace;
+		private final int[] bestOrientation;
+		private final int[] bestPlace;
+		private final Plan incumbent;
+		private int bestCount;
+		private boolean found;
+		private long nodes;
+		private boolean timedOut;
+
+		Search(BackPack backpack, List<Item> items, long deadline) {
+			this.width = backpack.width();
+			this.deadline = deadline;
+			this.free = freeCells(backpack);
+			this.incumbent = firstFit(backpack, items);
+			this.bestCount = incumbent.placed().size();
+			this.timedOut = isLate();
+			this.candidates = timedOut ? new Candidate[0] : candidates(items);
+			this.chosenOrientation = new int[candidates.length];
+			this.chosenPlace = new int[candidates.length];
+			this.bestOrientation = new int[candidates.length];
+			this.bestPlace = new int[candidates.length];
+		}
+
+		private Candidate[] candidates(List<Item> items) {
+			var list = new ArrayList<Candidate>();
+			for (Item item : items) {
+				Item rotated = item.rotate();
+				ItemMask mask = ItemMask.of(item);
+				ItemMask rotatedMask = ItemMask.of(rotated);
+				boolean distinct = !mask.equals(rotatedMask);
+				Item[] orientations = distinct ? new Item[] { item, rotated } : new Item[] { item };
+				ItemMask[] masks = distinct ? new ItemMask[] { mask, rotatedMask } : new ItemMask[] { mask };
+				int[][] places = new int[masks.length][];
+				boolean fitsSomewhere = false;
+				for (int o = 0; o < masks.length; o++) {
+					places[o] = places(masks[o]);
+					fitsSomewhere |= places[o].length > 0;
+				}
+				// an item that does not fit in the empty cells will never fit
+				if (fitsSomewhere) {
+					int area = 0;
+					for (long row : mask.rows()) {
+						area += Long.bitCount(row);
+					}
+					list.add(new Candidate(item, area, orientations, masks, places));
+				}
+				// without all the candidates the search cannot run, the first
+				// fit is kept
+				if (isLate()) {
+					timedOut = true;
+					return new Candidate[0];
+				}
+			}
+			// the large items first, they have the fewest places; the most
+			// expensive first among the items of the same shape
+			list.sort(Comparator.comparingInt(Candidate::area).reversed()
+					.thenComparing(c -> c.masks()[0].rows(), Arrays::compare)
+					.thenComparing(Comparator.comparingInt((Candidate c) -> c.item().price()).reversed()));
+			return list.toArray(Candidate[]::new);
+		}
+
+		/**
+		 * Places where a mask fits in the free cells, as x, y pairs.
+		 */
+		private int[] places(ItemMask mask) {
+			var places = new int[2 * width * free.length];
+			int count = 0;
+			for (int y = -mask.top(); y <= free.length - mask.bottom(); y++) {
+				for (int x = -mask.left(); x <= width - mask.right(); x++) {
+					if (mask.fitsAt(free, width, x, y)) {
+						places[count++] = x;
+						places[count++] = y;
+					}
+				}
+			}
+			return Arrays.copyOf(places, count);
+		}
+
+		private boolean isLate() {
+			return System.nanoTime() - deadline > 0;
+		}
+
+		Plan run() {
+			if (!timedOut && bestCount < candidates.length) {
+				int freeCount = 0;
+				for (long row : free) {
+					freeCount += Long.bitCount(row);
+				}
+				search(0, 0, freeCount);
+			}
+			if (!found) {
+				return new Plan(incumbent.placements(), incumbent.placed(), !timedOut);
+			}
+			var placements = new ArrayList<Placement>();
+			var placed = new ArrayList<Item>();
+			// by candidate, an item given twice is two candidates
+			for (int i = 0; i < candidates.length; i++) {
+				if (bestOrientation[i] >= 0) {
+					Candidate c = candidates[i];
+					int[] places = c.places()[bestOrientation[i]];
+					placements.add(new Placement(c.orientations()[bestOrientation[i]], places[2 * bestPlace[i]],
+							places[2 * bestPlace[i] + 1]));
+					placed.add(c.item());
+				}
+			}
+			return new Plan(placements, placed, !timedOut);
+		}
+
+		private void search(int index, int count, int freeCount) {
+			if (timedOut || bestCount == candidates.length)
+				return;
+			if (++nodes % CLOCK_PERIOD == 0 && isLate()) {
+				timedOut = true;
+				return;
+			}
+			if (index == candidates.length) {
+				if (count > bestCount) {
+					bestCount = count;
+					found = true;
+					System.arraycopy(chosenOrientation, 0, bestOrientation, 0, index);
+					System.arraycopy(chosenPlace, 0, bestPlace, 0, index);
+				}
+				return;
+			}
+			if (count + bound(index, freeCount) <= bestCount)
+				return;
+
+			Candidate c = candidates[index];
+			// the items of the same shape are interchangeable, they take their
+			// places in order and the left out ones come last
+			boolean sameShape = index > 0 && sameShape(candidates[index - 1], c);
+			if (!sameShape || chosenOrientation[index - 1] >= 0) {
+				for (int o = 0; o < c.masks().length; o++) {
+					if (sameShape && o < chosenOrientation[index - 1])
+						continue;
+					ItemMask mask = c.masks()[o];
+					int[] places = c.places()[o];
+					int first = sameShape && o == chosenOrientation[index - 1] ? chosenPlace[index - 1] + 1 : 0;
+					for (int p = first; 2 * p < places.length; p++) {
+						int x = places[2 * p];
+						int y = places[2 * p + 1];
+						if (!mask.fitsAt(free, width, x, y))
+							continue;
+						mask.occupy(free, width, x, y);
+						chosenOrientation[index] = o;
+						chosenPlace[index] = p;
+						search(index + 1, count + 1, freeCount - c.area());
+						mask.release(free, width, x, y);
+						if (timedOut || bestCount == candidates.length)
+							return;
+					}
+				}
+			}
+			chosenOrientation[index] = -1;
+			search(index + 1, count, freeCount);
+		}
+
+		/**
+		 * Largest number of the remaining items whose cells fit in the free
+		 * cells, taking the smallest items first.
+		 */
+		private int bound(int index, int freeCount) {
+			int fitting = 0;
+			for (int i = candidates.length - 1; i >= index; i--) {
+				freeCount -= candidates[i].area();
+				if (freeCount < 0)
+					break;
+				fitting++;
+			}
+			return fitting;
+		}
+
+		private static boolean sameShape(Candidate a, Candidate b) {
+			if (a.masks().length != b.masks().length)
+				return false;
+			for (int o = 0; o < a.masks().length; o++) {
+				if (!a.masks()[o].equals(b.masks()[o]))
+					return false;
+			}
+			return true;
+		}
+	}
+}
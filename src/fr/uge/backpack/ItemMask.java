@@ -0,0 +1,252 @@
+package fr.uge.backpack;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+import fr.uge.items.Item;
+
+/**
+ * Cells occupied by an item, one bit per cell. Bit {@code dx} of
+ * {@code rows[dy]} is set if the item occupies the cell {@code (dx, dy)}.
+ * The masks of the rectangles are shared, the masks of the other shapes
+ * are computed once per item.
+ *
+ * @param rows   the cells of each row of the item, never modified
+ * @param left   first column with a cell
+ * @param right  last column with a cell, plus one
+ * @param top    first row with a cell
+ * @param bottom last row with a cell, plus one, equal to top if the item has
+ *               no cell
+ */
+record ItemMask(long[] rows, int left, int right, int top, int bottom) {
+
+	/** Largest side of the rectangles kept in the table */
+	private static final int TABLE_SIZE = 8;
+
+	private static final ItemMask[][] rectangles = new ItemMask[TABLE_SIZE + 1][TABLE_SIZE + 1];
+	private static final Map<Item, ItemMask> shapes = Collections.synchronizedMap(new WeakHashMap<>());
+
+	static {
+		for (int w = 1; w <= TABLE_SIZE; w++) {
+			for (int h = 1; h <= TABLE_SIZE; h++) {
+				rectangles[w][h] = rectangle(w, h);
+			}
+		}
+	}
+
+	/**
+	 * Place found by {@link ItemMask#firstFit(ItemMask, ItemMask, long[], int)}.
+	 *
+	 * @param rotated true if the place is for the rotated item
+	 * @param x       column of the item
+	 * @param y       row of the item
+	 */
+	record Place(boolean rotated, int x, int y) {
+	}
+
+	ItemMask {
+		Objects.requireNonNull(rows);
+	}
+
+	/**
+	 * Tells if two masks have the same cells. The rows are compared by content,
+	 * the masks of two maledictions of the same shape are different arrays.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ItemMask mask && Arrays.equals(rows, mask.rows);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(rows);
+	}
+
+	/**
+	 * Returns the mask of an item in its current orientation.
+	 *
+	 * @param item the item
+	 * @return the mask
+	 */
+	static ItemMask of(Item item) {
+		Objects.requireNonNull(item);
+		// only the maledictions have a shape, the other items fill their rectangle
+		if (!item.isMalediction()) {
+			int w = item.width();
+			int h = item.height();
+			if (w <= TABLE_SIZE && h <= TABLE_SIZE) {
+				return rectangles[w][h];
+			}
+			return rectangle(w, h);
+		}
+		return shapes.computeIfAbsent(item, ItemMask::shape);
+	}
+
+	/**
+	 * Tells if all the cells of the item are in a grid when its top left
+	 * corner is at x, y.
+	 *
+	 * @param x      column of the item
+	 * @param y      row of the item
+	 * @param width  width of the grid
+	 * @param height height of the grid
+	 * @return true if the item fits
+	 */
+	boolean fitsIn(int x, int y, int width, int height) {
+		return top == bottom || x + left >= 0 && x + right <= width && y + top >= 0 && y + bottom <= height;
+	}
+
+	/**
+	 * Returns all the columns where the item fits in free cells when its top
+	 * left corner is on row y, one bit per column from column 0.
+	 *
+	 * @param free  the free cells of each row of the grid, one bit per column
+	 * @param width width of the grid
+	 * @param y     row of the item
+	 * @return the columns x where the item fits at x, y
+	 */
+	long columnsIn(long[] free, int width, int y) {
+		if (y < 0 || y + bottom > free.length)
+			return 0;
+		if (top == bottom)
+			return width == Long.SIZE ? -1L : (1L << width) - 1;
+		// bit x stays set only if the cell x + dx is free for each cell dx of the item
+		long columns = -1L;
+		for (int dy = top; dy < bottom && columns != 0; dy++) {
+			long row = free[y + dy];
+			for (long cells = rows[dy]; cells != 0; cells &= cells - 1) {
+				columns &= row >>> Long.numberOfTrailingZeros(cells);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Tells if all the cells of the item are free when its top left corner is
+	 * at x, y.
+	 *
+	 * @param free  the free cells of each row of the grid, one bit per column
+	 * @param width width of the grid
+	 * @param x     column of the item
+	 * @param y     row of the item
+	 * @return true if the item fits
+	 */
+	boolean fitsAt(long[] free, int width, int x, int y) {
+		if (!fitsIn(x, y, width, free.length))
+			return false;
+		for (int dy = top; dy < bottom; dy++) {
+			if ((atColumn(rows[dy], x, width) & ~free[y + dy]) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the cells of the item from the free cells, the place must have
+	 * been checked.
+	 *
+	 * @param free  the free cells of each row of the grid, one bit per column
+	 * @param width width of the grid
+	 * @param x     column of the item
+	 * @param y     row of the item
+	 */
+	void occupy(long[] free, int width, int x, int y) {
+		for (int dy = top; dy < bottom; dy++) {
+			free[y + dy] &= ~atColumn(rows[dy], x, width);
+		}
+	}
+
+	/**
+	 * Gives back the cells of the item to the free cells.
+	 *
+	 * @param free  the free cells of each row of the grid, one bit per column
+	 * @param width width of the grid
+	 * @param x     column of the item
+	 * @param y     row of the item
+	 */
+	void release(long[] free, int width, int x, int y) {
+		for (int dy = top; dy < bottom; dy++) {
+			free[y + dy] |= atColumn(rows[dy], x, width);
+		}
+	}
+
+	/**
+	 * Finds the first place in reading order where an item fits in free cells,
+	 * as it is or else rotated, and removes its cells from the free cells.
+	 *
+	 * @param mask        the mask of the item
+	 * @param rotatedMask the mask of the rotated item
+	 * @param free        the free cells of each row of the grid, one bit per
+	 *                    column
+	 * @param width       width of the grid
+	 * @return the place, or null if neither fits
+	 */
+	static Place firstFit(ItemMask mask, ItemMask rotatedMask, long[] free, int width) {
+		for (int y = 0; y < free.length; y++) {
+			long columns = mask.columnsIn(free, width, y);
+			long rotatedColumns = rotatedMask.columnsIn(free, width, y);
+			if ((columns | rotatedColumns) != 0) {
+				int x = Long.numberOfTrailingZeros(columns | rotatedColumns);
+				boolean rotated = (columns & 1L << x) == 0;
+				(rotated ? rotatedMask : mask).occupy(free, width, x, y);
+				return new Place(rotated, x, y);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Moves the cells of a row of an item to the column x of a grid, the cells
+	 * out of the grid are dropped.
+	 *
+	 * @param row   the cells of the row, one bit per column of the item
+	 * @param x     column of the item
+	 * @param width width of the grid
+	 * @return the cells of the row, one bit per column of the grid
+	 */
+	static long atColumn(long row, int x, int width) {
+		if (x >= width || x <= -Long.SIZE)
+			return 0;
+		long cells = x >= 0 ? row << x : row >>> -x;
+		return width == Long.SIZE ? cells : cells & (1L << width) - 1;
+	}
+
+	private static ItemMask rectangle(int width, int height) {
+		if (width <= 0 || height <= 0 || width > Long.SIZE)
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+		var rows = new long[height];
+		long row = width == Long.SIZE ? -1L : (1L << width) - 1;
+		for (int dy = 0; dy < height; dy++) {
+			rows[dy] = row;
+		}
+		return new ItemMask(rows, 0, width, 0, height);
+	}
+
+	private static ItemMask shape(Item item) {
+		if (item.width() > Long.SIZE)
+			throw new IllegalArgumentException("Invalid width: " + item.width());
+		var rows = new long[item.height()];
+		long all = 0;
+		int top = -1, bottom = 0;
+		for (int dy = 0; dy < item.height(); dy++) {
+			for (int dx = 0; dx < item.width(); dx++) {
+				if (item.occupies(dx, dy)) {
+					rows[dy] |= 1L << dx;
+				}
+			}
+			if (rows[dy] != 0) {
+				top = top < 0 ? dy : top;
+				bottom = dy + 1;
+			}
+			all |= rows[dy];
+		}
+		if (all == 0) {
+			return new ItemMask(rows, 0, 0, 0, 0);
+		}
+		return new ItemMask(rows, Long.numberOfTrailingZeros(all), Long.SIZE - Long.numberOfLeadingZeros(all), top,
+				bottom);
+	}
+}
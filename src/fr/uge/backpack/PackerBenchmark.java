@@ -0,0 +1,139 @@
+package fr.uge.backpack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import fr.uge.backpack.BackpackPacker.Plan;
+import fr.uge.items.HealingItem;
+import fr.uge.items.Item;
+import fr.uge.items.ItemType;
+import fr.uge.items.Ration;
+import fr.uge.items.Shield;
+import fr.uge.items.Sword;
+
+/**
+ * Compares the packer with the first fit of {@link BackPack#placeAll(List)},
+ * which adds the items as {@link BackPack#autoAdd(Item)} does, on random bags
+ * and random loots. The bags and the loots only depend on the seed, so two
+ * runs can be compared.
+ */
+public final class PackerBenchmark {
+
+	private static final int[][] STARTING_CELLS = { { 1, 2 }, { 1, 3 }, { 1, 4 }, { 2, 2 }, { 2, 3 }, { 2, 4 },
+			{ 3, 2 }, { 3, 3 }, { 3, 4 } };
+
+	private PackerBenchmark() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Builds a bag of 5x7 cells with the starting cells, some unlocked cells
+	 * around them and some items already inside.
+	 */
+	private static BackPack randomBag(Random random) {
+		var backpack = new BackPack(5, 7);
+		backpack.unlockCells(STARTING_CELLS);
+		int unlocks = random.nextInt(16);
+		for (int i = 0; i < unlocks; i++) {
+			var expansion = new BackpackExpansionSystem(backpack);
+			var cells = expansion.getAvailableExpansions();
+			if (cells.isEmpty())
+				break;
+			var cell = cells.get(random.nextInt(cells.size()));
+			backpack.unlockCell(cell.x, cell.y);
+		}
+		int items = random.nextInt(4);
+		for (int i = 0; i < items; i++) {
+			Item item = randomItem(random);
+			for (int tries = 0; tries < 10; tries++) {
+				if (backpack.place(item, random.nextInt(5), random.nextInt(7)))
+					break;
+			}
+		}
+		return backpack;
+	}
+
+	private static Item randomItem(Random random) {
+		int power = 5 + random.nextInt(16);
+		return switch (random.nextInt(6)) {
+		case 0 -> new Sword(ItemType.SWORD, power, 1, 1, 2, 5);
+		case 1 -> new Sword(ItemType.SWORD, power, 1, 1, 3, 5);
+		case 2 -> new Ration("Ration", 2, 1, 1);
+		case 3 -> new HealingItem("Heal", 10, 1, 1, 1);
+		case 4 -> new Shield("Shield+" + power, power, 2, 2, 5);
+		default -> new Shield("Tower+" + power, power, 2, 3, 5);
+		};
+	}
+
+	private static List<Item> randomLoot(Random random) {
+		var loot = new ArrayList<Item>();
+		int count = 3 + random.nextInt(8);
+		for (int i = 0; i < count; i++) {
+			loot.add(randomItem(random));
+		}
+		return loot;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args optionally the number of trials, the budget of the packer in
+	 *             microseconds and the seed
+	 */
+	public static void main(String[] args) {
+		int trials = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		long budgetMicros = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		var packer = new BackpackPacker(budgetMicros * 1000);
+
+		// the first rounds let the JIT compile the search and the first fit
+		var warmup = new Random(seed + 1);
+		for (int i = 0; i < 2000; i++) {
+			var backpack = randomBag(warmup);
+			var loot = randomLoot(warmup);
+			packer.plan(backpack, loot);
+			backpack.placeAll(loot);
+		}
+
+		var random = new Random(seed);
+		var packerTimes = new long[trials];
+		long firstFitItems = 0, packerItems = 0, firstFitNanos = 0, packerNanos = 0;
+		int improved = 0, complete = 0, late = 0;
+		for (int i = 0; i < trials; i++) {
+			var backpack = randomBag(random);
+			var loot = randomLoot(random);
+			var baseline = backpack.copy();
+
+			long start = System.nanoTime();
+			int firstFit = loot.size() - baseline.placeAll(loot).size();
+			long middle = System.nanoTime();
+			Plan plan = packer.plan(backpack, loot);
+			long end = System.nanoTime();
+
+			firstFitNanos += middle - start;
+			packerNanos += end - middle;
+			packerTimes[i] = end - middle;
+			firstFitItems += firstFit;
+			packerItems += plan.placed().size();
+			if (plan.placed().size() > firstFit)
+				improved++;
+			if (plan.complete())
+				complete++;
+			if (end - middle > budgetMicros * 1000)
+				late++;
+		}
+
+		System.out.println("Trials : " + trials + ", budget : " + budgetMicros + " µs");
+		System.out.printf("First fit : %d items, %.1f µs per loot%n", firstFitItems, firstFitNanos / 1000.0 / trials);
+		// the longest times come from the pauses of the garbage collector and of the
+		// system, the search itself stops a few microseconds after its budget
+		Arrays.sort(packerTimes);
+		System.out.printf("Packer    : %d items, %.1f µs per loot, p99 %.1f µs, max %.1f µs%n", packerItems,
+				packerNanos / 1000.0 / trials, packerTimes[Math.min(trials - 1, trials * 99 / 100)] / 1000.0,
+				packerTimes[trials - 1] / 1000.0);
+		System.out.printf("More items in %.1f %% of the loots, optimal in %.1f %%, over the budget in %.1f %%%n",
+				100.0 * improved / trials, 100.0 * complete / trials, 100.0 * late / trials);
+	}
+}
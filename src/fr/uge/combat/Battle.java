@@ -1,5 +1,6 @@
 package fr.uge.combat;
 
+import java.awt.Point;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -117,15 +118,11 @@ public class Battle {
 	 * @return two int that show the coordinate x, y of the item
 	 */
 	private int[] findItemPosition(Item item) {
-		Item[][] grid = backpack.grid();
-		for (int y = 0; y < backpack.height(); y++) {
-			for (int x = 0; x < backpack.width(); x++) {
-				if (grid[y][x] == item) {
-					return new int[] { x, y };
-				}
-			}
+		Point position = backpack.positionOf(item);
+		if (position == null) {
+			return new int[] { 0, 0 };
 		}
-		return new int[] { 0, 0 };
+		return new int[] { position.x, position.y };
 	}
 
 	public void endPlayerTurn() {
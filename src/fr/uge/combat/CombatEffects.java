@@ -1,7 +1,6 @@
 package fr.uge.combat;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.Point;
 
 import fr.uge.backpack.BackPack;
 import fr.uge.enemy.Hero;
@@ -58,10 +57,8 @@ public class CombatEffects {
 		if (item == null)
 			return false;
 
-		Set<int[]> itemPositions = getItemPositions(item);
-
-		for (int[] pos : itemPositions) {
-			if (hasHeartGemAround(pos[0], pos[1])) {
+		for (Point pos : backpack.cellsOf(item)) {
+			if (hasHeartGemAround(pos.x, pos.y)) {
 				return true;
 			}
 		}
@@ -91,24 +88,6 @@ public class CombatEffects {
 		return false;
 	}
 
-	/**
-	 * Get all positions that are occupied by all items
-	 */
-	private Set<int[]> getItemPositions(Item item) {
-		Set<int[]> positions = new HashSet<>();
-		Item[][] grid = backpack.grid();
-
-		for (int y = 0; y < backpack.height(); y++) {
-			for (int x = 0; x < backpack.width(); x++) {
-				if (grid[y][x] == item) {
-					positions.add(new int[] { x, y });
-				}
-			}
-		}
-
-		return positions;
-	}
-
 	/**
 	 * Check if an item is a heart gem
 	 */
@@ -0,0 +1,179 @@
+package fr.uge.graphics;
+
+import java.awt.Graphics2D;
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.github.forax.zen.ApplicationContext;
+import com.github.forax.zen.Event;
+import com.github.forax.zen.ScreenInfo;
+
+import fr.uge.graphics.SnapshotRenderer.Sample;
+import fr.uge.graphics.ViewState.Screen;
+
+/**
+ * Checks that drawing a frame allocates nothing once the view is warmed up.
+ * Each display is drawn many times into an {@link OffscreenContext}, once
+ * with the frame unchanged and once with the whole screen repainted, and the
+ * bytes allocated by the drawing thread are read from the
+ * {@link com.sun.management.ThreadMXBean}. What the context allocates itself
+ * to give a graphics to each frame is counted apart and left out, a window
+ * allocates its own for the same reason.
+ *
+ * <p>The check fails, with an exit status of 1, when a display allocates more
+ * than {@link #UNCHANGED_TOLERANCE} bytes per unchanged frame or
+ * {@link #REPAINTED_TOLERANCE} bytes per repainted frame on average.
+ */
+public final class AllocationCheck {
+
+	/**
+	 * Bytes allowed per frame that draws nothing: the screen info read once
+	 * per frame, 16 bytes, since the context of a window builds a new one on
+	 * each call; and the lambda each display gives to renderFrame, up to 64
+	 * bytes with the values it captures.
+	 */
+	static final int UNCHANGED_TOLERANCE = 96;
+
+	/**
+	 * Bytes allowed per repainted frame: those of an unchanged frame; the
+	 * description of the font that Java2D builds again for the first text
+	 * drawn on the new graphics of a frame, about 100 bytes; and the three
+	 * rectangles Java2D allocates for each image drawn, 96 bytes, when the JIT
+	 * does not remove them, which depends on the run.
+	 */
+	static final int REPAINTED_TOLERANCE = 512;
+
+	private static final int WARMUP_FRAMES = 2000;
+	private static final int ROUNDS = 5;
+
+	private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Context drawing into an offscreen context, counting the bytes the
+	 * offscreen context allocates around the drawing of each frame.
+	 */
+	private static final class CountingContext implements ApplicationContext {
+		private final OffscreenContext offscreen;
+		// created once, so that counting allocates nothing
+		private final Consumer<Graphics2D> counted = this::draw;
+		private Consumer<Graphics2D> renderer;
+		private long drawnBytes;
+		private long contextBytes;
+
+		private CountingContext(OffscreenContext offscreen) {
+			this.offscreen = offscreen;
+		}
+
+		private void draw(Graphics2D g) {
+			long start = threads.getCurrentThreadAllocatedBytes();
+			renderer.accept(g);
+			drawnBytes += threads.getCurrentThreadAllocatedBytes() - start;
+		}
+
+		@Override
+		public void renderFrame(Consumer<Graphics2D> renderer) {
+			this.renderer = Objects.requireNonNull(renderer);
+			long drawn = drawnBytes;
+			long start = threads.getCurrentThreadAllocatedBytes();
+			offscreen.renderFrame(counted);
+			contextBytes += threads.getCurrentThreadAllocatedBytes() - start - (drawnBytes - drawn);
+			this.renderer = null;
+		}
+
+		@Override
+		public ScreenInfo getScreenInfo() {
+			return offscreen.getScreenInfo();
+		}
+
+		@Override
+		public void dispose() {
+			offscreen.dispose();
+		}
+
+		@Override
+		public Event pollEvent() {
+			return offscreen.pollEvent();
+		}
+
+		@Override
+		public Event pollOrWaitEvent(long timeout) {
+			return offscreen.pollOrWaitEvent(timeout);
+		}
+	}
+
+	private AllocationCheck() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Bytes allocated per frame by a display, beyond what the context allocates.
+	 * The lowest of several rounds is kept: a round that runs while the JIT
+	 * still compiles a method allocates what the compiled code does not.
+	 */
+	private static double bytesPerFrame(CountingContext context, GameView view, ViewState state, boolean repaint,
+			int frames) {
+		double lowest = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long contextBytes = context.contextBytes;
+			long start = threads.getCurrentThreadAllocatedBytes();
+			for (int i = 0; i < frames; i++) {
+				if (repaint) {
+					view.regions().invalidate();
+				}
+				view.display(state);
+			}
+			long bytes = threads.getCurrentThreadAllocatedBytes() - start - (context.contextBytes - contextBytes);
+			lowest = Math.min(lowest, Math.max(0, bytes) / (double) frames);
+		}
+		return lowest;
+	}
+
+	/**
+	 * Runs the check.
+	 *
+	 * @param args optionally the number of frames of each round measured per
+	 *             display, the width and the height of the screen
+	 */
+	public static void main(String[] args) {
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int width = args.length > 2 ? Integer.parseInt(args[1]) : 1280;
+		int height = args.length > 2 ? Integer.parseInt(args[2]) : 800;
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("Error : this JVM does not count the allocated memory");
+			System.exit(1);
+		}
+		GameView.loadItemAssets();
+
+		boolean failed = false;
+		for (int index = 0; index < 4; index++) {
+			var offscreen = new OffscreenContext(width, height);
+			var context = new CountingContext(offscreen);
+			var view = new GameView(context);
+			// the fourth display is the corridor of the game of the first one
+			Sample sample = SnapshotRenderer.sample(context, view, index % 3);
+			Screen screen = index == 3 ? Screen.CORRIDOR : sample.screen();
+			ViewState state = ViewState.capture(sample.controller(), screen, null);
+
+			// a view drawing into the offscreen context waits for all the images
+			new GameView(offscreen).display(state);
+			// the first frames let the JIT compile the drawing
+			for (int i = 0; i < WARMUP_FRAMES; i++) {
+				view.regions().invalidate();
+				view.display(state);
+			}
+			double unchanged = bytesPerFrame(context, view, state, false, frames);
+			double repainted = bytesPerFrame(context, view, state, true, frames);
+			boolean ok = unchanged <= UNCHANGED_TOLERANCE && repainted <= REPAINTED_TOLERANCE;
+			failed |= !ok;
+			System.out.printf("%-9s : %6.1f B / unchanged frame, %6.1f B / repainted frame%s%n", screen, unchanged,
+					repainted, ok ? "" : "  FAILED");
+		}
+		if (failed) {
+			System.out.println("Error : a display allocates more than " + UNCHANGED_TOLERANCE + " B per unchanged frame or "
+					+ REPAINTED_TOLERANCE + " B per repainted frame");
+			System.exit(1);
+		}
+	}
+}
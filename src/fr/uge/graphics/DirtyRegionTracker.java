@@ -0,0 +1,176 @@
+package fr.uge.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Path2D;
+
+/**
+ * Finds the parts of the screen that changed since the previous frame.
+ * The frame buffer of the window is kept from one frame to the next, so the
+ * view only needs to repaint the regions whose content changed: the frame is
+ * drawn as usual, but clipped to these regions.
+ *
+ * <p>Each frame, the view describes every region with its bounds and a stamp
+ * summarizing what is drawn inside. A region is dirty when its stamp or its
+ * bounds changed, in which case both its old and new bounds are repainted.
+ * A change of scene repaints the whole screen.
+ */
+final class DirtyRegionTracker {
+
+	/**
+	 * Parts of the screen tracked separately.
+	 */
+	enum Region {
+		MAP, BACKPACK, ROOM_GRID, DRAGGED_ITEM, FLOATING_ITEMS, HERO_STATS, EXPERIENCE, PROFILER
+	}
+
+	private static final int MARGIN = 4;
+	private static final int REGIONS = Region.values().length;
+
+	private final Rectangle[] bounds = new Rectangle[REGIONS];
+	private final long[] stamps = new long[REGIONS];
+	private final boolean[] tracked = new boolean[REGIONS];
+	private final boolean[] present = new boolean[REGIONS];
+	private final Rectangle[] dirty = new Rectangle[2 * REGIONS];
+	private final Path2D.Float clip = new Path2D.Float();
+	private final Rectangle scratch = new Rectangle();
+	private int dirtyCount;
+	private long scene;
+	private boolean full = true;
+	private int width;
+	private int height;
+
+	DirtyRegionTracker() {
+		for (int i = 0; i < REGIONS; i++) {
+			bounds[i] = new Rectangle();
+		}
+		for (int i = 0; i < dirty.length; i++) {
+			dirty[i] = new Rectangle();
+		}
+	}
+
+	/**
+	 * Returns a rectangle for the view to read bounds into while it draws,
+	 * so nothing is allocated on each frame. Its content is only valid until
+	 * the next call.
+	 *
+	 * @return the rectangle, always the same
+	 */
+	Rectangle scratch() {
+		return scratch;
+	}
+
+	/**
+	 * Starts describing a frame.
+	 *
+	 * @param scene  stamp of everything not covered by a region: the room, its
+	 *               background, the frame of a running animation...
+	 * @param width  width of the screen
+	 * @param height height of the screen
+	 */
+	void begin(long scene, int width, int height) {
+		if (scene != this.scene || width != this.width || height != this.height) {
+			full = true;
+		}
+		this.scene = scene;
+		this.width = width;
+		this.height = height;
+		dirtyCount = 0;
+		for (int i = 0; i < REGIONS; i++) {
+			present[i] = false;
+		}
+	}
+
+	/**
+	 * Describes a region of the frame.
+	 *
+	 * @param region the region
+	 * @param x      left of the region
+	 * @param y      top of the region
+	 * @param w      width of the region
+	 * @param h      height of the region
+	 * @param stamp  summary of what is drawn in the region
+	 */
+	void track(Region region, int x, int y, int w, int h, long stamp) {
+		int i = region.ordinal();
+		present[i] = true;
+		Rectangle previous = bounds[i];
+		boolean moved = previous.x != x - MARGIN || previous.y != y - MARGIN || previous.width != w + 2 * MARGIN
+				|| previous.height != h + 2 * MARGIN;
+		if (!tracked[i] || moved || stamps[i] != stamp) {
+			if (tracked[i]) {
+				addDirty(previous);
+			}
+			previous.setBounds(x - MARGIN, y - MARGIN, w + 2 * MARGIN, h + 2 * MARGIN);
+			addDirty(previous);
+		}
+		tracked[i] = true;
+		stamps[i] = stamp;
+	}
+
+	/**
+	 * Forces the next frame to be repainted entirely, for example because an
+	 * image was not loaded yet and will appear.
+	 */
+	void invalidate() {
+		full = true;
+	}
+
+	/**
+	 * @return true if the next frame has to be repainted entirely
+	 */
+	boolean isInvalid() {
+		return full;
+	}
+
+	/**
+	 * Ends the description of the frame and restricts the drawing to the
+	 * dirty regions.
+	 *
+	 * @param g the graphics of the frame
+	 * @return false if nothing changed and the frame does not need to be drawn
+	 */
+	boolean clip(Graphics2D g) {
+		for (int i = 0; i < REGIONS; i++) {
+			if (tracked[i] && !present[i]) {
+				addDirty(bounds[i]);
+				tracked[i] = false;
+			}
+		}
+		if (full) {
+			full = false;
+			return true;
+		}
+		if (dirtyCount == 0) {
+			return false;
+		}
+		clip.reset();
+		for (int i = 0; i < dirtyCount; i++) {
+			Rectangle r = dirty[i];
+			clip.moveTo(r.x, r.y);
+			clip.lineTo(r.x + r.width, r.y);
+			clip.lineTo(r.x + r.width, r.y + r.height);
+			clip.lineTo(r.x, r.y + r.height);
+			clip.closePath();
+		}
+		g.clip(clip);
+		return true;
+	}
+
+	/**
+	 * Queues a rectangle to repaint, merged with an overlapping one if any.
+	 */
+	private void addDirty(Rectangle r) {
+		for (int i = 0; i < dirtyCount; i++) {
+			if (dirty[i].intersects(r)) {
+				dirty[i].add(r);
+				return;
+			}
+		}
+		if (dirtyCount == dirty.length) {
+			full = true;
+			return;
+		}
+		dirty[dirtyCount++].setBounds(r);
+	}
+}
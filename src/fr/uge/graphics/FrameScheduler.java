@@ -0,0 +1,161 @@
+package fr.uge.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Decides when the main loop draws a frame and how long it waits for events.
+ *
+ * <p>A frame is drawn only when something changed (an event was handled, the
+ * view asks to be redrawn) or while something moves on screen, and never more
+ * often than the target frame rate. While animating, frames are paced on a
+ * fixed period, like a vertical sync. When nothing happens the loop sleeps in
+ * {@code pollOrWaitEvent} until the next event, so an idle window uses
+ * almost no CPU.
+ */
+final class FrameScheduler {
+
+	/**
+	 * Frame time statistics over the recent frames.
+	 *
+	 * @param frames        frames drawn since the start
+	 * @param slowFrames    frames that took longer than a period to draw
+	 * @param averageMillis average time spent drawing a recent frame
+	 * @param p95Millis     95th percentile of the recent frame times
+	 * @param maxMillis     longest recent frame time
+	 */
+	record Stats(long frames, long slowFrames, double averageMillis, double p95Millis, double maxMillis) {
+		@Override
+		public String toString() {
+			return String.format("%d frames (%d slow), frame time avg %.2f ms, p95 %.2f ms, max %.2f ms", frames,
+					slowFrames, averageMillis, p95Millis, maxMillis);
+		}
+	}
+
+	/** Longest wait for an event when nothing is scheduled, in milliseconds */
+	private static final int IDLE_TIMEOUT = 1000;
+	private static final int RECENT_FRAMES = 120;
+
+	private final long period;
+	private final long[] recent = new long[RECENT_FRAMES];
+	private final long[] sorted = new long[RECENT_FRAMES];
+	private long nextFrame;
+	private boolean requested = true;
+	private boolean wasAnimating;
+	private long frames;
+	private long slowFrames;
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param targetFps maximum number of frames per second
+	 */
+	FrameScheduler(int targetFps) {
+		if (targetFps <= 0)
+			throw new IllegalArgumentException("Invalid frame rate: " + targetFps);
+		this.period = 1_000_000_000L / targetFps;
+		this.nextFrame = System.nanoTime();
+	}
+
+	/**
+	 * Creates a scheduler whose frame rate comes from the
+	 * {@code backpackhero.fps} system property, 60 by default.
+	 *
+	 * @return the scheduler
+	 */
+	static FrameScheduler withDefaultFrameRate() {
+		return new FrameScheduler(Integer.getInteger("backpackhero.fps", 60));
+	}
+
+	/**
+	 * @return the time between two frames, in milliseconds, at least 1
+	 */
+	int framePeriodMillis() {
+		return (int) Math.max(1, period / 1_000_000);
+	}
+
+	/**
+	 * Asks for a frame, for example because an event changed the game.
+	 */
+	void requestFrame() {
+		requested = true;
+	}
+
+	/**
+	 * Computes how long the loop can wait for an event.
+	 *
+	 * @param animating true if something moves on screen
+	 * @return the timeout in milliseconds, until the next frame is due
+	 */
+	int pollTimeout(boolean animating) {
+		observe(animating);
+		if (!requested && !animating) {
+			return IDLE_TIMEOUT;
+		}
+		long remaining = nextFrame - System.nanoTime();
+		if (remaining <= 0) {
+			return 0;
+		}
+		return (int) ((remaining + 999_999) / 1_000_000);
+	}
+
+	/**
+	 * Tells if a frame must be drawn now.
+	 *
+	 * @param animating true if something moves on screen
+	 * @return true if a frame was requested or something moves, and the
+	 *         previous frame is at least one period old
+	 */
+	boolean shouldRender(boolean animating) {
+		observe(animating);
+		return (requested || animating) && System.nanoTime() - nextFrame >= 0;
+	}
+
+	/**
+	 * Asks for one more frame when an animation stops, to show its final state.
+	 */
+	private void observe(boolean animating) {
+		if (wasAnimating && !animating) {
+			requested = true;
+		}
+		wasAnimating = animating;
+	}
+
+	/**
+	 * Records a drawn frame and schedules the next one a period later.
+	 *
+	 * @param start the {@link System#nanoTime()} at which the frame started
+	 */
+	void frameRendered(long start) {
+		long now = System.nanoTime();
+		recent[(int) (frames % RECENT_FRAMES)] = now - start;
+		frames++;
+		requested = false;
+
+		if (now - start > period) {
+			slowFrames++;
+		}
+		nextFrame += period;
+		if (nextFrame - now < 0) {
+			// too late to keep the cadence, start again from now
+			nextFrame = now + period;
+		}
+	}
+
+	/**
+	 * @return the statistics of the recent frames
+	 */
+	Stats stats() {
+		int count = (int) Math.min(frames, RECENT_FRAMES);
+		if (count == 0) {
+			return new Stats(0, 0, 0, 0, 0);
+		}
+		System.arraycopy(recent, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		long total = 0;
+		for (int i = 0; i < count; i++) {
+			total += sorted[i];
+		}
+		int p95 = Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1);
+		return new Stats(frames, slowFrames, total / 1e6 / count, sorted[p95] / 1e6, sorted[count - 1] / 1e6);
+	}
+}
@@ -2,24 +2,30 @@ package fr.uge.graphics;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 import com.github.forax.zen.ApplicationContext;
+import com.github.forax.zen.Event;
 import com.github.forax.zen.KeyboardEvent;
 import com.github.forax.zen.PointerEvent;
+import com.github.forax.zen.ScreenInfo;
 
 import fr.uge.backpack.BackPack;
 import fr.uge.backpack.BackpackExpansionSystem;
+import fr.uge.backpack.BackpackPacker;
 import fr.uge.combat.Battle;
 import fr.uge.combat.Battle.EnemyAction;
 import fr.uge.enemy.Enemy;
 import fr.uge.enemy.Hero;
 import fr.uge.items.FloatingItem;
+import fr.uge.items.FloatingItemIndex;
 import fr.uge.items.Item;
 import fr.uge.map.Dungeon;
 import fr.uge.map.MapDungeon;
@@ -31,7 +37,8 @@ import fr.uge.room.TreasureChest;
 import fr.uge.room.Room.Type;
 
 public class GameController {
-	private final ApplicationContext context;
+	// taken once, the context can only be used by the thread that draws
+	private final ScreenInfo screen;
 	private final GameView view;
 	private final MapDungeon floor;
 	private final BackPack backpack;
@@ -41,10 +48,10 @@ public class GameController {
 	private TreasureChest treasureChest;
 	private final Merchant merchant;
 	private final BackpackExpansionSystem expansionSystem;
-	private final List<FloatingItem> floatingItems = new ArrayList<>();
 	private final List<Integer> selectedItems = new ArrayList<>();
 
 	private static final int TRANSITION_DURATION = 3000;
+	private static final int ATTACK_ANIMATION_DURATION = 4500;
 	private boolean inCorridor = true;
 	private boolean inTreasure = false;
 	private boolean inCombat = false;
@@ -63,6 +70,7 @@ public class GameController {
 
 	private final int backpackOriginX = 20, backpackOriginY = 550;
 	private final int backpackCellSize = 60, backpackPadding = 8;
+	private final FloatingItemIndex floatingItems = new FloatingItemIndex(backpackCellSize, backpackPadding);
 	private int treasureStartX, treasureStartY;
 	private int merchantStartX, merchantStartY;
 
@@ -99,7 +107,7 @@ public class GameController {
 	public GameController(ApplicationContext context, GameView view, MapDungeon floor, BackPack backpack, Battle fight,
 			Dungeon dungeon, Hero hero, TreasureChest TreasureChest, Merchant Merchant,
 			BackpackExpansionSystem BackpackExpansionSystem, HealerRoom HealerRoom) {
-		this.context = Objects.requireNonNull(context);
+		this.screen = context.getScreenInfo();
 		this.view = Objects.requireNonNull(view);
 		this.floor = Objects.requireNonNull(floor);
 		this.backpack = Objects.requireNonNull(backpack);
@@ -206,6 +214,10 @@ public class GameController {
 		return isDragging;
 	}
 
+	public MapDungeon getFloor() {
+		return floor;
+	}
+
 	public Merchant getMerchant() {
 		return merchant;
 	}
@@ -262,7 +274,7 @@ public class GameController {
 		return merchant.getStock().getGrid();
 	}
 
-	public List<FloatingItem> getFloatingItems() {
+	public FloatingItemIndex getFloatingItems() {
 		return floatingItems;
 	}
 	/**
@@ -282,13 +294,13 @@ public class GameController {
 	}
 
 	// ===================== MAIN LOOP =====================
-	public void update(int pollTimeout) {
-		updatePlayerAnimation();
-
-		var event = context.pollOrWaitEvent(pollTimeout);
-		if (event == null)
-			return;
-
+	/**
+	 * Handles an event of the window.
+	 *
+	 * @param event the event
+	 */
+	public void handle(Event event) {
+		Objects.requireNonNull(event);
 		switch (event) {
 		case KeyboardEvent ke -> handleKeyboard(ke);
 		case PointerEvent pe -> handlePointer(pe);
@@ -297,6 +309,17 @@ public class GameController {
 		}
 	}
 
+	/**
+	 * Tells if something moves on screen without any event: the player going
+	 * from room to room, the transition between rooms or the attack animation.
+	 *
+	 * @return true while the screen changes over time
+	 */
+	public boolean isAnimating() {
+		return isPlayerMoving || isFollowingPath || isTransitioning()
+				|| (isInCombat() && System.currentTimeMillis() - lastAttackTime < ATTACK_ANIMATION_DURATION);
+	}
+
 	// ===================== KEYBOARD HANDLING =====================
 	/**
 	 * Handles all keyboard inputs.
@@ -314,6 +337,8 @@ public class GameController {
 			return;
 		if (handleDelete(ke))
 			return;
+		if (handleLootAll(ke))
+			return;
 		if (handleCombatEndTurn(ke))
 			return;
 	}
@@ -369,6 +394,34 @@ public class GameController {
 		return false;
 	}
 
+	/**
+	 * Puts as many items of the treasure chest as possible in the backpack
+	 * when L is pressed. The items that do not fit stay in the chest.
+	 *
+	 * @param ke the keyboard event
+	 * @return true if the chest was looted
+	 */
+	private boolean handleLootAll(KeyboardEvent ke) {
+		if (ke.key() != KeyboardEvent.Key.L || ke.action() != KeyboardEvent.Action.KEY_PRESSED || !inTreasure
+				|| isDragging || draggedItem != null)
+			return false;
+
+		Grid grid = treasureChest.getGrid();
+		var items = new ArrayList<Item>();
+		Set<Item> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Item[] row : grid.getGrid()) {
+			for (Item item : row) {
+				if (item != null && !item.isMalediction() && seen.add(item)) {
+					items.add(item);
+				}
+			}
+		}
+		for (Item item : BackpackPacker.withDefaultBudget().lootAll(backpack, items)) {
+			grid.removeItem(item);
+		}
+		return true;
+	}
+
 	/**
 	 * Ends the player's turn during combat when CTRL is released.
 	 * Also checks enemy actions and combat end.
@@ -464,7 +517,7 @@ public class GameController {
 		if (!inHealer)
 			return false;
 
-		var info = context.getScreenInfo();
+		var info = screen;
 		int buttonWidth = 200;
 		int buttonHeight = 80;
 		int buttonX = (info.width() - buttonWidth) / 2;
@@ -829,7 +882,7 @@ public class GameController {
 
 				Point spawn = new Point(dragMouseX, dragMouseY);
 
-				boolean alreadyFloating = floatingItems.stream().anyMatch(f -> f.item == currentMalediction);
+				boolean alreadyFloating = floatingItems.contains(currentMalediction);
 
 				if (!alreadyFloating) {
 					floatingItems.add(new FloatingItem(currentMalediction, spawn));
@@ -1274,7 +1327,7 @@ public class GameController {
 	}
 
 	private void setTreasureDisplayCoords() {
-		var info = context.getScreenInfo();
+		var info = screen;
 		int chestX = info.width() / 2 - 100;
 		int chestY = info.height() / 3 - 75;
 		treasureStartX = chestX;
@@ -1282,7 +1335,7 @@ public class GameController {
 	}
 
 	private void setMerchantDisplayCoords() {
-		var info = context.getScreenInfo();
+		var info = screen;
 		int chestX = info.width() / 2 - 100;
 		int chestY = info.height() / 3 - 75;
 		merchantStartX = chestX;
@@ -1300,15 +1353,7 @@ public class GameController {
 	 * @return the floating item if found, otherwise null
 	 */
 	private FloatingItem findFloatingItemAt(int mouseX, int mouseY) {
-		for (FloatingItem f : floatingItems) {
-			int width = f.item.width() * (backpackCellSize + backpackPadding) - backpackPadding;
-			int height = f.item.height() * (backpackCellSize + backpackPadding) - backpackPadding;
-			if (mouseX >= f.position.x && mouseX <= f.position.x + width && mouseY >= f.position.y
-					&& mouseY <= f.position.y + height) {
-				return f;
-			}
-		}
-		return null;
+		return floatingItems.itemAt(mouseX, mouseY);
 	}
 	
 	/**
@@ -1,11 +1,12 @@
 package fr.uge.graphics;
 
 import java.awt.Color;
-import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.github.forax.zen.Application;
+import com.github.forax.zen.Event;
+import com.github.forax.zen.KeyboardEvent;
 
 import fr.uge.backpack.BackPack;
 import fr.uge.backpack.BackpackExpansionSystem;
@@ -13,7 +14,6 @@ import fr.uge.combat.Battle;
 import fr.uge.enemy.Hero;
 import fr.uge.items.Gold;
 import fr.uge.items.HealingItem;
-import fr.uge.items.Item;
 import fr.uge.items.ItemType;
 import fr.uge.items.Ration;
 import fr.uge.items.Shield;
@@ -29,6 +29,9 @@ import fr.uge.room.TreasureChest;
  */
 public class GameRun {
 
+	/** Prints the timings of the main loop, with {@code -Dbackpackhero.stats=true} */
+	private static final boolean STATS = Boolean.getBoolean("backpackhero.stats");
+
 	public GameRun() {
 	}
 	/**
@@ -36,7 +39,6 @@ public class GameRun {
 	 */
 	public void run() {
 		Application.run(Color.BLACK, context -> {
-			int status = 0;
 			Dungeon dungeon = new Dungeon(new Random());
 
 			BackPack backpack = new BackPack(5, 7);
@@ -44,22 +46,18 @@ public class GameRun {
 			backpack.unlockCells(sCells);
 
 			var floor0 = dungeon.getFloor(0);
-			GameView view = new GameView(context, floor0, backpack);
+			GameView view = new GameView(context);
 
 //		Rayane M2
 			AtomicBoolean areAssetsLoaded = new AtomicBoolean(false);
 			long startTime = System.currentTimeMillis();
+			var screen = context.getScreenInfo();
 			new Thread(() -> {
-				GameView.loadGameAssets();
+				GameView.loadGameAssets(screen.width(), screen.height());
 				areAssetsLoaded.set(true);
 			}).start();
 
-			while (!areAssetsLoaded.get()) {
-				view.loadingDisplay(startTime);
-				context.pollOrWaitEvent(10);
-			}
-
-
+			// the game state is built while the first assets are decoding
 			backpack.place(new Sword(ItemType.SWORD, 10, 1, 1, 2, 5), 2, 2);
 			backpack.place(new HealingItem("Heal", 10, 1, 1), 3, 2);
 			backpack.autoAdd(new Gold("Gold", 10));
@@ -67,10 +65,6 @@ public class GameRun {
 			var hero = new Hero(40, 0, 3, 0, backpack);
 			var fight = new Battle(hero, backpack, new Random());
 
-			var screenInfo = context.getScreenInfo();
-			var width = screenInfo.width();
-			var height = screenInfo.height();
-
 			var treasureChest = new TreasureChest(3, 5);
 			var merchant = new Merchant(3, 5);
 			var expansionSystem = new BackpackExpansionSystem(backpack);
@@ -79,46 +73,63 @@ public class GameRun {
 			GameController controller = new GameController(context, view, floor0, backpack, fight, dungeon, hero,
 					treasureChest, merchant, expansionSystem, healerRoom);
 
+			while (!areAssetsLoaded.get()) {
+				view.loadingDisplay(startTime);
+				context.pollOrWaitEvent(10);
+			}
+			boolean firstFrame = true;
+			FrameScheduler frames = FrameScheduler.withDefaultFrameRate();
+			if (STATS) {
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("Frames : " + frames.stats())));
+			}
+
+			// from now on the controller and the game belong to the logic thread, this
+			// thread only forwards the events and draws the states it publishes
+			LogicLoop logic = new LogicLoop(controller, frames.framePeriodMillis());
+			logic.start();
+			ViewState drawn = null;
+
 			while (true) {
-				boolean needsFastUpdate = controller.isDragging() || controller.isPlayerMoving()
-						|| controller.isFollowingPath();
-				int pollTimeout = needsFastUpdate ? 0 : 10;
-
-				controller.update(pollTimeout);
-
-				List<Integer> selectedSlots = controller.getSelectedSlots();
-				Item[][] treasureGrid = controller.getTreasureGrid();
-				Item[][] getMerchantGrid = controller.getMerchantGrid();
-				boolean isDragging = controller.isDragging();
-				Item draggedItem = controller.getDraggedItem();
-				int dragOffsetX = controller.getDragOffsetX();
-				int dragOffsetY = controller.getDragOffsetY();
-
-				if (controller.isInExpansionMode()) {
-					view.expansionDisplay(controller, selectedSlots, hero, controller.getExpansionSystem());
-				} else if (controller.isInCombat()) {
-					view.combatDisplay(controller, fight.nbEnemy(), status, selectedSlots, hero, fight.getEnemy(), isDragging,
-							draggedItem, dragOffsetX, dragOffsetY, controller.getLastAttackTime(), controller.getFloatingItems());
-				} else if (controller.isInCorridor()) {
-					view.corridorDisplay(controller, selectedSlots, hero, isDragging, draggedItem, dragOffsetX, dragOffsetY,
-							controller.getFloatingItems(), controller.getLastChangeRoom(), controller.isTransitionFromMerchant(),
-							controller.isTransitionFromCorridor());
-				} else if (controller.isInTreasure()) {
-					view.treasureDisplay(controller, selectedSlots, treasureGrid, hero, isDragging, draggedItem, dragOffsetX,
-							dragOffsetY, controller.getFloatingItems());
-				} else if (controller.isInMerchant()) {
-					view.merchantDisplay(controller, selectedSlots, getMerchantGrid, hero, isDragging, draggedItem, dragOffsetX,
-							dragOffsetY, controller.getFloatingItems());
-				} else if (controller.isInHealer()) {
-					view.healerDisplay(controller, controller.getSelectedSlots(), controller.getHero(),
-							controller.getHealerRoom(), controller.isDragging(), controller.getDraggedItem(),
-							controller.getDragOffsetX(), controller.getDragOffsetY(), controller.getFloatingItems());
-				} else {
-					view.emptyRoomDisplay(controller, selectedSlots, hero, isDragging, draggedItem, dragOffsetX, dragOffsetY,
-							controller.getFloatingItems());
+				// events are handled as they come, a frame is drawn only when the logic
+				// published a new state and at most at the target frame rate
+				ViewState state = logic.latest();
+				boolean animating = state.animating() || view.needsRedraw();
+				int timeout = frames.pollTimeout(animating);
+				if (logic.isBusy()) {
+					// the state of the last events is coming soon
+					timeout = Math.min(timeout, 1);
+				}
+				for (Event event = context.pollOrWaitEvent(timeout); event != null; event = context.pollEvent()) {
+					// P shows the render profiler, the key is not sent to the game
+					if (event instanceof KeyboardEvent ke && ke.key() == KeyboardEvent.Key.P) {
+						if (ke.action() == KeyboardEvent.Action.KEY_PRESSED) {
+							view.toggleProfiler();
+							frames.requestFrame();
+						}
+						continue;
+					}
+					logic.post(event);
+				}
+				state = logic.latest();
+				if (state != drawn) {
+					frames.requestFrame();
+				}
+				animating = state.animating() || view.needsRedraw();
+				if (!frames.shouldRender(animating)) {
+					continue;
+				}
+				long frameStart = System.nanoTime();
+				view.display(state);
+				drawn = state;
+				frames.frameRendered(frameStart);
+
+				if (firstFrame) {
+					firstFrame = false;
+					if (STATS)
+						System.out.println("First interactive frame after " + (System.currentTimeMillis() - startTime) + " ms");
 				}
 
-				if (hero.hp() <= 0) {
+				if (state.hero().hp() <= 0) {
 					System.out.println("Votre personnage est MORT ! Fin du jeu");
 					System.exit(0);
 				}
@@ -1,35 +1,68 @@
 package fr.uge.graphics;
 
 import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Graphics2D;
-import java.awt.geom.Rectangle2D;
+import java.awt.Rectangle;
+import java.awt.Stroke;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-
-import javax.imageio.ImageIO;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import com.github.forax.zen.ApplicationContext;
 
+import fr.uge.assets.Animation;
+import fr.uge.assets.AnimationSet;
+import fr.uge.assets.AssetLoader;
+import fr.uge.assets.AssetManifest;
+import fr.uge.assets.AtlasAnimation;
+import fr.uge.assets.DeltaAnimation;
+import fr.uge.assets.DiskCache;
+import fr.uge.assets.ImageCache;
+import fr.uge.assets.LoadMetrics;
+import fr.uge.assets.StreamingAnimation;
 import fr.uge.backpack.BackPack;
-import fr.uge.backpack.BackpackExpansionSystem;
 import fr.uge.combat.Battle;
 import fr.uge.enemy.Enemy;
-import fr.uge.enemy.Hero;
+import fr.uge.graphics.DirtyRegionTracker.Region;
+import fr.uge.graphics.RenderLayers.Layer;
+import fr.uge.graphics.RenderProfiler.Phase;
+import fr.uge.graphics.ViewState.CombatState;
+import fr.uge.graphics.ViewState.DragState;
+import fr.uge.graphics.ViewState.ExpansionState;
+import fr.uge.graphics.ViewState.HealerState;
+import fr.uge.graphics.ViewState.HeroStats;
+import fr.uge.graphics.ViewState.MapState;
+import fr.uge.graphics.ViewState.PlayerState;
 import fr.uge.items.FloatingItem;
+import fr.uge.items.FloatingItemIndex;
 import fr.uge.items.Item;
 import fr.uge.items.Malediction;
-import fr.uge.map.MapDungeon;
-import fr.uge.room.HealerRoom;
 import fr.uge.room.Room;
 
-public record GameView(ApplicationContext context, MapDungeon floor, BackPack backpack) {
+public record GameView(ApplicationContext context, DirtyRegionTracker regions, RenderLayers layers,
+		LabelCache labels, RenderProfiler profiler) {
+
+	public GameView {
+		Objects.requireNonNull(context);
+		Objects.requireNonNull(regions);
+		Objects.requireNonNull(layers);
+		Objects.requireNonNull(labels);
+		Objects.requireNonNull(profiler);
+	}
+
+	public GameView(ApplicationContext context) {
+		this(context, new DirtyRegionTracker(), new RenderLayers(), new LabelCache(), new RenderProfiler());
+	}
 
 	// ===================== CONSTANTES =====================
 	private static final int CELL_SIZE = 60;
@@ -40,281 +73,499 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 	private static final int GRID_PADDING = 10;
 	private static final int GRID_COLS = 4;
 
+	// ===================== COLORS AND STROKES =====================
+	// Created once, the frames only pick them
+	private static final Color PATH_COLOR = new Color(255, 255, 0, 100);
+	private static final Color ACCESSIBLE_ROOM_COLOR = new Color(100, 255, 100);
+	private static final Color ENEMY_ROOM_COLOR = new Color(200, 80, 80);
+	private static final Color TREASURE_ROOM_COLOR = new Color(250, 220, 80);
+	private static final Color MERCHANT_ROOM_COLOR = new Color(80, 180, 250);
+	private static final Color HEALER_ROOM_COLOR = new Color(100, 220, 100);
+	private static final Color EXIT_ROOM_COLOR = new Color(180, 80, 250);
+	private static final Color OTHER_ROOM_COLOR = new Color(180, 180, 180);
+	private static final Color LOCKED_CELL_COLOR = new Color(60, 60, 60);
+	private static final Color EXPANDABLE_CELL_COLOR = new Color(0, 255, 0, 150);
+	private static final Color CLOSED_CELL_COLOR = new Color(80, 80, 80);
+	private static final Color TREASURE_ITEM_CELL_COLOR = new Color(255, 200, 100);
+	private static final Color MERCHANT_CELL_COLOR = new Color(100, 200, 255);
+	private static final Color MERCHANT_ITEM_CELL_COLOR = new Color(150, 220, 255);
+	// black at 150/255 over the cell, opaque: Java2D allocates a raster on each
+	// shape drawn with a translucent color
+	private static final Color MERCHANT_ITEM_BORDER_COLOR = new Color(62, 91, 105);
+	private static final Color HEALER_BACKGROUND_COLOR = new Color(100, 150, 100);
+	private static final Color HEAL_BUTTON_COLOR = new Color(100, 200, 100);
+	private static final Color HEAL_BUTTON_BORDER_COLOR = new Color(50, 150, 50);
+	private static final Color DISABLED_BUTTON_COLOR = new Color(150, 150, 150);
+	private static final Color DISABLED_BUTTON_BORDER_COLOR = new Color(100, 100, 100);
+	private static final Color PROTECTION_COLOR = new Color(100, 180, 255);
+	private static final Color EXPERIENCE_COLOR = new Color(255, 215, 0);
+	private static final Color BUBBLE_COLOR = new Color(255, 255, 255, 230);
+	private static final Color MALEDICTION_COLOR = new Color(150, 50, 200);
+	private static final Color FLOATING_MALEDICTION_COLOR = new Color(150, 50, 200, 180);
+	private static final Color PLACED_MALEDICTION_COLOR = new Color(120, 30, 180);
+	private static final Color MALEDICTION_BORDER_COLOR = new Color(200, 100, 255);
+	private static final Stroke THIN_STROKE = new BasicStroke(1);
+	private static final Stroke MEDIUM_STROKE = new BasicStroke(2);
+	private static final Stroke THICK_STROKE = new BasicStroke(3);
+	private static final Stroke PATH_STROKE = new BasicStroke(4);
+	private static final Composite DRAGGED_ITEM_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f);
+	private static final int BUBBLE_WIDTH = 100;
+	private static final int BUBBLE_HEIGHT = 70;
+	// the border of a bubble is drawn up to 1 pixel outside of it
+	private static final int BUBBLE_MARGIN = 2;
+	// the bubbles are drawn once, Java2D allocates each time it draws a round
+	// shape or a translucent color
+	private static final Map<Battle.EnemyAction, BufferedImage> bubbles = bubbleImages();
+
 	// ===================== ASSETS =====================
-	private static final List<BufferedImage> loadingAnimation = loadFrames(161, "loadingscreen", "loading", "jpg");
-	private static BufferedImage corridorImage;
-	private static BufferedImage treasureRoomImage;
-	private static BufferedImage treasureImage;
-	private static BufferedImage heroImage;
-	private static BufferedImage heroImage2;
-	private static BufferedImage enemyRoomImage0;
-	private static BufferedImage enemyRoomImage1;
-	private static BufferedImage enemyRoomImage2;
-	private static BufferedImage enemyRoomImage3;
-	private static BufferedImage attackOrDefenseBanner;
-	private static BufferedImage attackBanner;
-	private static BufferedImage defendBanner;
-	private static BufferedImage injuredEnemy;
-	private static BufferedImage merchantImage;
-	private static BufferedImage healerRoomImage;
-
-	private static Map<String, BufferedImage> weaponAssets = new HashMap<>();
-	private static List<BufferedImage> fightingAnimation1;
-	private static List<BufferedImage> fightingAnimation2;
-	private static List<BufferedImage> fightingAnimation3;
-	private static List<BufferedImage> corridorToCorridorAnimation;
-	private static List<BufferedImage> merchantToCorridorAnimation;
+	private static final AssetManifest manifest = AssetManifest.loadOrScan(AssetLoader.DATA_FOLDER);
+	// the item images are kept at their original size, the manifest gives their memory
+	private static final AssetLoader loader = new AssetLoader(
+			ImageCache.withDefaultBudget(manifest.pixelBytes(AssetManifest.WEAPONS_GROUP)),
+			DiskCache.withDefaultDirectory());
+	private static final int PREFETCH_FRAMES = 8;
+
+	private static final String BACKGROUNDS = "backgrounds";
+	private static final String SPRITES = "sprites";
+	private static final String WEAPONS = AssetManifest.WEAPONS_GROUP;
+
+	private static final String CORRIDOR_IMAGE = "corridor2.png";
+	private static final String TREASURE_ROOM_IMAGE = "treasureroom.png";
+	private static final String TREASURE_IMAGE = "treasure.png";
+	private static final String HERO_IMAGE = "hero.png";
+	private static final String HERO_IMAGE_2 = "hero2.png";
+	private static final String ENEMY_ROOM_IMAGE_0 = "fight0.png";
+	private static final String ENEMY_ROOM_IMAGE_1 = "fight1.png";
+	private static final String ENEMY_ROOM_IMAGE_2 = "fight2.png";
+	private static final String ENEMY_ROOM_IMAGE_3 = "fight3.png";
+	private static final String ATTACK_OR_DEFENSE_BANNER = "attackdefend.png";
+	private static final String ATTACK_BANNER = "attack.png";
+	private static final String DEFEND_BANNER = "defend.png";
+	private static final String INJURED_ENEMY_IMAGE = "injuredRat.jpg";
+	private static final String MERCHANT_IMAGE = "merchantback.png";
+
+	private static final Map<String, String> weaponFiles = new ConcurrentHashMap<>();
+	// Items are drawn from images resampled once per size
+	private static final ItemSprites itemSprites = new ItemSprites(GameView::itemImage);
+	// Images that failed to load, reported once and no longer requested
+	private static final Set<String> missingAssets = ConcurrentHashMap.newKeySet();
+	private static volatile boolean assetsLoaded;
+	private static Animation loadingAnimation;
+	private static volatile Animation fightingAnimation1;
+	private static volatile Animation fightingAnimation2;
+	private static volatile Animation fightingAnimation3;
+	private static volatile Animation corridorToCorridorAnimation;
+	private static volatile Animation merchantToCorridorAnimation;
 
 	// ===================== ASSET LOADING =====================
-	private static BufferedImage loadImage(String fileName) {
-		try {
-			File file = Path.of("./data", fileName).toFile();
-			BufferedImage result = ImageIO.read(file);
-			if (result == null) {
-				throw new IllegalArgumentException("Error loading: " + fileName);
-			}
-			return result;
-		} catch (IOException e) {
-			throw new RuntimeException("Unable to load: " + fileName, e);
-		}
-	}
-
-	public static void loadGameAssets() {
-		if (corridorImage != null)
+	/**
+	 * Loads the assets of the game by priority.
+	 * Only what the first screen needs (corridor, hero, item images) is waited
+	 * for; every other image and the animations are submitted after it and keep
+	 * decoding in the background while the game runs. Until an image is ready
+	 * its room is drawn without it.
+	 * Images are resampled to the size they are drawn at on this screen, and an
+	 * image evicted from the cache later is decoded again when it is drawn.
+	 * Each step is measured, and the summary of the loading is printed once
+	 * the background work is over.
+	 *
+	 * @param width  width of the screen
+	 * @param height height of the screen
+	 */
+	public static void loadGameAssets(int width, int height) {
+		if (assetsLoaded)
 			return;
 
-		loadStaticImages();
-		loadAnimations();
-		loadAllWeapons();
-		System.out.println("Assets loaded !");
-	}
-
-	private static void loadStaticImages() {
-		corridorImage = loadImage("corridor2.png");
-		treasureRoomImage = loadImage("treasureroom.png");
-		treasureImage = loadImage("treasure.png");
-		heroImage = loadImage("hero.png");
-		heroImage2 = loadImage("hero2.png");
-		enemyRoomImage0 = loadImage("fight0.png");
-		enemyRoomImage1 = loadImage("fight1.png");
-		enemyRoomImage2 = loadImage("fight2.png");
-		enemyRoomImage3 = loadImage("fight3.png");
-		attackOrDefenseBanner = loadImage("attackdefend.png");
-		attackBanner = loadImage("attack.png");
-		defendBanner = loadImage("defend.png");
-		injuredEnemy = loadImage("injuredRat.jpg");
-		merchantImage = loadImage("merchantback.png");
-	}
-
-	private static List<BufferedImage> loadFrames(int nbFrames, String folder, String name, String type) {
-		List<BufferedImage> frames = new ArrayList<>();
-		for (int i = 1; i < nbFrames; i++) { // a modifier le /10 !!!
-			frames.add(loadImage("./" + folder + "/" + name + "(" + i + ")." + type));
-			System.out.println("./" + folder + "/" + name + "(" + i + ").jpg");
+		LoadMetrics.Phase critical = loader.metrics().begin("critical");
+		List<String> problems = manifest.validate(AssetLoader.DATA_FOLDER);
+		if (!problems.isEmpty()) {
+			System.out.println("Error : " + problems.size() + " assets missing or modified : " + problems);
 		}
-		return frames;
-	}
-
-	private static List<BufferedImage> loadAttackFrames(int nbEnemies, int nbFrames) {
-		List<BufferedImage> frames = new ArrayList<>();
-		for (int i = 1; i < nbFrames; i++) { // a modifier le /10 !!!
-			if (i % 2 == 0) {
-				frames.add(loadImage("./fighting" + nbEnemies + "/hit_(" + i + ").png"));
-				System.out.println("Frame chargé : hit_(" + i + ").png");
-			}
+		List<AssetManifest.Entry> weapons = manifest.group(WEAPONS);
+		List<CompletableFuture<BufferedImage>> pending = new ArrayList<>();
+		pending.addAll(loadAllWeapons(weapons));
+		pending.addAll(loadCriticalImages(width, height));
+		loader.plan(loader.submittedCount());
+		pending.forEach(AssetLoader::join);
+		critical.end();
+		assetsLoaded = true;
+
+		List<CompletableFuture<Void>> background = new ArrayList<>();
+		background.add(measure("background images", loadBackgroundImages(width, height)));
+		background.addAll(loadAnimations(width, height));
+		CompletableFuture.allOf(background.toArray(CompletableFuture[]::new))
+				.whenComplete((result, error) -> loader.metrics().printSummaryOnce());
+	}
+
+	/**
+	 * Loads only the images of the items, for a view drawing into an
+	 * {@link OffscreenContext}: it waits for the other images when it draws them.
+	 */
+	public static void loadItemAssets() {
+		loadAllWeapons(manifest.group(WEAPONS)).forEach(AssetLoader::join);
+	}
+
+	private static CompletableFuture<Void> measure(String name, CompletableFuture<Void> step) {
+		LoadMetrics.Phase phase = loader.metrics().begin(name);
+		return step.whenComplete((result, error) -> phase.end());
+	}
+
+	/**
+	 * @return ratio of the submitted images that are already decoded
+	 */
+	public static double loadingProgress() {
+		return loader.progress();
+	}
+
+	/**
+	 * Images of the corridor, the map and the backpack, needed by the first frame.
+	 */
+	private static List<CompletableFuture<BufferedImage>> loadCriticalImages(int width, int height) {
+		return List.of(loader.load(BACKGROUNDS, CORRIDOR_IMAGE, width, height),
+				loader.load(SPRITES, HERO_IMAGE, GRID_CELL_SIZE / 2, GRID_CELL_SIZE / 2),
+				loader.load(SPRITES, HERO_IMAGE_2, width, height));
+	}
+
+	/**
+	 * Images of the other rooms. They are not waited for: a failure is only
+	 * reported, and the image is requested again when its room is drawn.
+	 *
+	 * @return completes when every image is loaded or has failed
+	 */
+	private static CompletableFuture<Void> loadBackgroundImages(int width, int height) {
+		List<CompletableFuture<BufferedImage>> pending = List.of(
+				loader.load(BACKGROUNDS, TREASURE_ROOM_IMAGE, width, height),
+				loader.load(SPRITES, TREASURE_IMAGE, width / 2, height / 2),
+				loader.load(BACKGROUNDS, ENEMY_ROOM_IMAGE_0, width, height),
+				loader.load(BACKGROUNDS, ENEMY_ROOM_IMAGE_1, width, height),
+				loader.load(BACKGROUNDS, ENEMY_ROOM_IMAGE_2, width, height),
+				loader.load(BACKGROUNDS, ENEMY_ROOM_IMAGE_3, width, height),
+				loader.load(SPRITES, ATTACK_OR_DEFENSE_BANNER, width / 5, height / 5),
+				loader.load(SPRITES, ATTACK_BANNER, width / 5, height / 5),
+				loader.load(SPRITES, DEFEND_BANNER, width / 5, height / 5),
+				loader.load(BACKGROUNDS, INJURED_ENEMY_IMAGE, width, height),
+				loader.load(BACKGROUNDS, MERCHANT_IMAGE, width, height));
+		return CompletableFuture.allOf(pending.stream().map(image -> image.exceptionally(error -> {
+			System.out.println("Error : " + error.getMessage());
+			return null;
+		})).toArray(CompletableFuture[]::new));
+	}
+
+	/**
+	 * @return the encodings started in the background
+	 */
+	private static List<CompletableFuture<Void>> loadAnimations(int width, int height) {
+		fightingAnimation1 = openAnimation(AnimationSet.FIGHTING_1, width, height);
+		fightingAnimation2 = openAnimation(AnimationSet.FIGHTING_2, width, height);
+		fightingAnimation3 = openAnimation(AnimationSet.FIGHTING_3, width, height);
+		corridorToCorridorAnimation = openAnimation(AnimationSet.CORRIDOR_TO_CORRIDOR, width, height);
+		merchantToCorridorAnimation = openAnimation(AnimationSet.MERCHANT_TO_CORRIDOR, width, height);
+
+		List<CompletableFuture<Void>> encodings = new ArrayList<>();
+		if (corridorToCorridorAnimation instanceof StreamingAnimation) {
+			encodings.add(encodeDeltas(AnimationSet.CORRIDOR_TO_CORRIDOR, width, height,
+					animation -> corridorToCorridorAnimation = animation));
+		}
+		if (merchantToCorridorAnimation instanceof StreamingAnimation) {
+			encodings.add(encodeDeltas(AnimationSet.MERCHANT_TO_CORRIDOR, width, height,
+					animation -> merchantToCorridorAnimation = animation));
 		}
-		return frames;
+		return encodings;
+	}
+
+	/**
+	 * Encodes a room transition as a keyframe plus the regions that change.
+	 * Its frames are almost identical from one to the next, so once encoded it
+	 * replaces the streamed version and the streamed frames leave the cache.
+	 */
+	private static CompletableFuture<Void> encodeDeltas(AnimationSet set, int width, int height,
+			Consumer<Animation> install) {
+		return measure("encode " + set.folder(),
+				DeltaAnimation.encodeAsync(loader, frameFiles(set), width, height).thenAccept(animation -> {
+					install.accept(animation);
+					loader.cache().invalidate(set.folder());
+				}).exceptionally(error -> {
+					System.out.println("Error : unable to encode " + set.folder() + " : " + error.getMessage());
+					return null;
+				}));
+	}
+
+	/**
+	 * Reads the packed atlas of an animation when the build produced one,
+	 * otherwise streams its frames from the image files.
+	 */
+	private static Animation openAnimation(AnimationSet set, int width, int height) {
+		Animation atlas = AtlasAnimation.openIfPresent(AssetLoader.DATA_FOLDER, set);
+		if (atlas != null) {
+			return atlas;
+		}
+		return new StreamingAnimation(loader, set.folder(), frameFiles(set), PREFETCH_FRAMES, width, height);
 	}
 
-	private static void loadAnimations() {
-		fightingAnimation1 = loadAttackFrames(1, 157);
-		fightingAnimation2 = loadAttackFrames(2, 78);
-		fightingAnimation3 = loadAttackFrames(3, 78);
-		corridorToCorridorAnimation = loadFrames(160, "animationroom", "room", "jpg");
-		merchantToCorridorAnimation = loadFrames(160, "animationmerchant", "merchant", "png");
+	/**
+	 * @return the frame files of an animation, as listed in the manifest
+	 */
+	private static List<String> frameFiles(AnimationSet set) {
+		return manifest.paths(set.folder());
 	}
 
-	private static void loadAllWeapons() {
-		File folder = new File("./data/weapons");
-		File[] files = folder.listFiles();
-
-		if (files != null) {
-			for (File file : files) {
-				if (file.isFile() && file.getName().endsWith(".png")) {
-					String key = file.getName().substring(0, file.getName().lastIndexOf('.'));
-
-					BufferedImage img = loadImage("weapons/" + file.getName());
-
-					if (img != null) {
-						weaponAssets.put(key, img);
-						System.out.println("Weapon loaded : " + key);
-					}
-				}
-			}
-		} else {
-			System.out.println("Error : Weapon folder not found");
+	/**
+	 * Loads the item images listed in the manifest. The key of an item image is
+	 * its file name without folder nor extension.
+	 */
+	private static List<CompletableFuture<BufferedImage>> loadAllWeapons(List<AssetManifest.Entry> entries) {
+		if (entries.isEmpty()) {
+			System.out.println("Error : no weapon in the manifest");
 		}
+		List<CompletableFuture<BufferedImage>> weapons = new ArrayList<>();
+		for (AssetManifest.Entry entry : entries) {
+			String path = entry.path();
+			String key = path.substring(path.lastIndexOf('/') + 1, path.lastIndexOf('.'));
+			weaponFiles.put(key, path);
+			weapons.add(loader.load(WEAPONS, path));
+		}
+		return weapons;
 	}
 
 	// ===================== MAIN DISPLAYS =====================
 	public void loadingDisplay(long startTime) {
 		int totalTime = 8000;
+		var info = context.getScreenInfo();
+		int width = info.width();
+		int height = info.height();
+		if (loadingAnimation == null) {
+			loadingAnimation = openAnimation(AnimationSet.LOADING, width, height);
+		}
+		regions.invalidate();
 		context.renderFrame(g -> {
-			clearScreen(g);
-			drawAnimation(g, 0, totalTime, loadingAnimation);
+			clearScreen(g, width, height);
+			drawAnimation(g, 0, totalTime, loadingAnimation, width, height);
 			long currentTime = System.currentTimeMillis();
 			long totalElapsed = currentTime - startTime;
 			long loopElapsed = totalElapsed % totalTime;
 			long loopStartTime = currentTime - loopElapsed;
 
-			drawAnimation(g, loopStartTime, totalTime, loadingAnimation);
+			if (isReady(loadingAnimation)) {
+				drawAnimation(g, loopStartTime, totalTime, loadingAnimation, width, height);
+			}
+			drawLoadingProgress(g, loadingProgress(), width, height);
 		});
 	}
 
-	public void render(GameController controller, List<Integer> selectedSlots, boolean isDragging, Item draggedItem,
-			int dragOffsetX, int dragOffsetY, List<FloatingItem> floatingItems) {
-		context.renderFrame(g -> {
-			clearScreen(g);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
-		});
+	private void drawLoadingProgress(Graphics2D g, double progress, int width, int height) {
+		int barWidth = width / 3;
+		int barHeight = 12;
+		int x = (width - barWidth) / 2;
+		int y = height - 60;
+
+		g.setColor(Color.DARK_GRAY);
+		g.fillRect(x, y, barWidth, barHeight);
+		g.setColor(Color.WHITE);
+		g.fillRect(x, y, (int) (progress * barWidth), barHeight);
+		g.drawRect(x, y, barWidth, barHeight);
+		g.drawString((int) (progress * 100) + " %", x + barWidth + 10, y + barHeight);
+	}
+
+	/**
+	 * Draws a state of the game with the display it is in.
+	 *
+	 * @param state the state
+	 */
+	void display(ViewState state) {
+		Objects.requireNonNull(state);
+		profiler.beginFrame();
+		// read once, the context builds a new screen info each time it is asked
+		var info = context.getScreenInfo();
+		int width = info.width();
+		int height = info.height();
+		switch (state.screen()) {
+		case EXPANSION -> expansionDisplay(state, width, height);
+		case COMBAT -> combatDisplay(state, width, height);
+		case CORRIDOR -> corridorDisplay(state, width, height);
+		case TREASURE -> treasureDisplay(state, width, height);
+		case MERCHANT -> merchantDisplay(state, width, height);
+		case HEALER -> healerDisplay(state, width, height);
+		case EMPTY_ROOM -> emptyRoomDisplay(state, width, height);
+		}
+		profiler.endFrame();
 	}
 
-	public void combatDisplay(GameController controller, int nbEnemies, int status, List<Integer> selectedSlots,
-			Hero hero, List<Enemy> enemies, boolean isDragging, Item draggedItem, int dragOffsetX, int dragOffsetY,
-			long lastAttackTime, List<FloatingItem> floatingItems) {
+	private void combatDisplay(ViewState state, int width, int height) {
+		CombatState combat = state.combat();
+		int nbEnemies = combat.nbEnemies();
+		long lastAttackTime = combat.lastAttackTime();
+		long scene = mix(mix(SCENE_COMBAT, nbEnemies), combat.status());
+		scene = mix(scene, animationFrame(lastAttackTime, 4500, combatAnimation(nbEnemies)));
+		List<Enemy> enemies = combat.enemies();
+		for (int i = 0; i < enemies.size(); i++) {
+			Enemy enemy = enemies.get(i);
+			scene = mix(mix(scene, enemy.hp()), enemy.isAlive() ? 1 : 0);
+		}
+		scene = mix(scene, combat.actions().hashCode());
+		long combatScene = scene;
 		context.renderFrame(g -> {
-			clearScreen(g);
-			if (isAnimationPlaying(lastAttackTime, 4500)) {
-				drawCombatAnimation(g, nbEnemies, lastAttackTime);
-			} else {
-				drawCombatScene(g, nbEnemies, status, enemies);
+			if (!beginFrame(g, combatScene, state, true, width, height))
+				return;
+			clearScreen(g, width, height);
+			if (!isAnimationPlaying(lastAttackTime, 4500)
+					|| !drawCombatAnimation(g, nbEnemies, lastAttackTime, width, height)) {
+				drawCombatScene(g, nbEnemies, combat.status(), combat.enemies(), width, height);
 			}
-			drawAllBars(g, hero, enemies);
-			drawEnemyActionBubbles(g, controller.getEnemyActions(), enemies);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
-
+			drawAllBars(g, state.hero(), combat.enemies(), width, height);
+			drawEnemyActionBubbles(g, combat.actions(), combat.enemies(), width);
+			drawGrid(g, state);
+			drawBackPack(g, state);
+			drawFloatingItems(g, state.floatingItems(), width, height);
+			drawProfiler(g, width, height);
 		});
 	}
 
-	public void corridorDisplay(GameController controller, List<Integer> selectedSlots, Hero hero, boolean isDragging,
-			Item draggedItem, int dragOffsetX, int dragOffsetY, List<FloatingItem> floatingItems, long lastChangeRoom,
-			boolean fromMerchant, boolean fromCorridor) {
+	private void corridorDisplay(ViewState state, int width, int height) {
+		int animationDuration = 3000;
+		long lastChangeRoom = state.lastChangeRoom();
+		Animation animToPlay = (state.previousRoomType() == Room.Type.MERCHANT)
+				? merchantToCorridorAnimation
+				: corridorToCorridorAnimation;
+		long scene = mix(mix(SCENE_CORRIDOR, System.identityHashCode(animToPlay)),
+				animationFrame(lastChangeRoom, animationDuration, animToPlay));
 		context.renderFrame(g -> {
-			clearScreen(g);
-			int animationDuration = 3000;
-
-			if (isAnimationPlaying(lastChangeRoom, animationDuration)) {
-				List<BufferedImage> animToPlay = (controller.getPreviousRoomType() == Room.Type.MERCHANT)
-						? merchantToCorridorAnimation
-						: corridorToCorridorAnimation;
-				if (animToPlay != null && !animToPlay.isEmpty()) {
-					drawAnimation(g, lastChangeRoom, animationDuration, animToPlay);
-				}
+			if (!beginFrame(g, scene, state, true, width, height))
+				return;
+			clearScreen(g, width, height);
+			// the transition covers the whole screen, the map is not drawn under it
+			boolean transition = isAnimationPlaying(lastChangeRoom, animationDuration) && isReady(animToPlay);
+			if (transition) {
+				drawAnimation(g, lastChangeRoom, animationDuration, animToPlay, width, height);
 			} else {
-				drawCorridor(g);
-				drawHero(g);
+				drawCorridor(g, width, height);
+				drawHero(g, width, height);
 			}
 
-			drawAllHeroBars(g, hero);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
+			drawAllHeroBars(g, state.hero(), width, height);
+			if (!transition) {
+				drawGrid(g, state);
+			}
+			drawBackPack(g, state);
+			drawFloatingItems(g, state.floatingItems(), width, height);
+			drawProfiler(g, width, height);
 		});
 	}
 
-	public void expansionDisplay(GameController controller, List<Integer> selectedSlots, Hero hero,
-			BackpackExpansionSystem expansionSystem) {
+	private void expansionDisplay(ViewState state, int width, int height) {
+		ExpansionState expansion = state.expansion();
+		long scene = mix(mix(SCENE_EXPANSION, expansion.pendingUnlocks()), state.backpack().version());
 		context.renderFrame(g -> {
-			clearScreen(g);
-			drawEmptyRoom(g);
-			drawAllHeroBars(g, hero);
-			drawHero(g);
-			drawGrid(g, controller);
-			drawBackPackWithExpansion(g, selectedSlots, expansionSystem);
+			if (!beginFrame(g, scene, state, false, width, height))
+				return;
+			clearScreen(g, width, height);
+			drawEmptyRoom(g, width, height);
+			drawAllHeroBars(g, state.hero(), width, height);
+			drawHero(g, width, height);
+			drawGrid(g, state);
+			drawBackPackWithExpansion(g, state.backpack(), expansion);
+			drawProfiler(g, width, height);
 		});
 	}
 
-	public void merchantDisplay(GameController controller, List<Integer> selectedSlots, Item[][] merchantGrid, Hero hero,
-			boolean isDragging, Item draggedItem, int dragOffsetX, int dragOffsetY, List<FloatingItem> floatingItems) {
+	private void merchantDisplay(ViewState state, int width, int height) {
 		context.renderFrame(g -> {
-			clearScreen(g);
-			drawMerchantBackground(g);
-			drawAllHeroBars(g, hero);
-			drawMerchantStock(g, merchantGrid, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
+			if (!beginFrame(g, SCENE_MERCHANT, state, true, width, height))
+				return;
+			clearScreen(g, width, height);
+			drawMerchantBackground(g, width, height);
+			drawAllHeroBars(g, state.hero(), width, height);
+			drawMerchantStock(g, state.roomGrid(), state.drag(), width, height);
+			drawGrid(g, state);
+			drawBackPack(g, state);
+			drawFloatingItems(g, state.floatingItems(), width, height);
+			drawProfiler(g, width, height);
 		});
 	}
 
-	public void treasureDisplay(GameController controller, List<Integer> selectedSlots, Item[][] treasureGrid, Hero hero,
-			boolean isDragging, Item draggedItem, int dragOffsetX, int dragOffsetY, List<FloatingItem> floatingItems) {
+	private void treasureDisplay(ViewState state, int width, int height) {
 		context.renderFrame(g -> {
-			clearScreen(g);
-			drawAllHeroBars(g, hero);
-			drawTreasure(g);
-			drawTreasureChest(g, treasureGrid, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
+			if (!beginFrame(g, SCENE_TREASURE, state, true, width, height))
+				return;
+			clearScreen(g, width, height);
+			drawAllHeroBars(g, state.hero(), width, height);
+			drawTreasure(g, width, height);
+			drawTreasureChest(g, state.roomGrid(), state.drag(), width, height);
+			drawGrid(g, state);
+			drawBackPack(g, state);
+			drawFloatingItems(g, state.floatingItems(), width, height);
+			drawProfiler(g, width, height);
 		});
 	}
 
-	public void emptyRoomDisplay(GameController controller, List<Integer> selectedSlots, Hero hero, boolean isDragging,
-			Item draggedItem, int dragOffsetX, int dragOffsetY, List<FloatingItem> floatingItems) {
+	private void emptyRoomDisplay(ViewState state, int width, int height) {
 		context.renderFrame(g -> {
-			clearScreen(g);
-			drawEmptyRoom(g);
-			drawAllHeroBars(g, hero);
-			drawHero(g);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
+			if (!beginFrame(g, SCENE_EMPTY_ROOM, state, true, width, height))
+				return;
+			clearScreen(g, width, height);
+			drawEmptyRoom(g, width, height);
+			drawAllHeroBars(g, state.hero(), width, height);
+			drawHero(g, width, height);
+			drawGrid(g, state);
+			drawBackPack(g, state);
+			drawFloatingItems(g, state.floatingItems(), width, height);
+			drawProfiler(g, width, height);
 		});
 	}
 
-	public void healerDisplay(GameController controller, List<Integer> selectedSlots, Hero hero, HealerRoom healerRoom,
-			boolean isDragging, Item draggedItem, int dragOffsetX, int dragOffsetY, List<FloatingItem> floatingItems) {
+	private void healerDisplay(ViewState state, int width, int height) {
+		HealerState healer = state.healer();
+		long scene = mix(mix(SCENE_HEALER, healer.canHeal() ? 1 : 0), healer.enoughGold() ? 1 : 0);
 		context.renderFrame(g -> {
-			clearScreen(g);
-			drawHealerRoom(g, hero, healerRoom);
-			drawAllHeroBars(g, hero);
-			drawGrid(g, controller);
-			drawBackPack(g, selectedSlots, isDragging, draggedItem, dragOffsetX, dragOffsetY);
-			drawFloatingItems(g, floatingItems);
+			if (!beginFrame(g, scene, state, true, width, height))
+				return;
+			clearScreen(g, width, height);
+			drawHealerRoom(g, healer, width, height);
+			drawAllHeroBars(g, state.hero(), width, height);
+			drawGrid(g, state);
+			drawBackPack(g, state);
+			drawFloatingItems(g, state.floatingItems(), width, height);
+			drawProfiler(g, width, height);
 		});
 	}
 
 	// ===================== COMBAT HELPERS =====================
-	private void drawCombatAnimation(Graphics2D g, int nbEnemies, long startTime) {
-		List<BufferedImage> animation = switch (nbEnemies) {
+	/**
+	 * @return false if the animation is still loading and nothing was drawn
+	 */
+	private boolean drawCombatAnimation(Graphics2D g, int nbEnemies, long startTime, int width, int height) {
+		Animation animation = combatAnimation(nbEnemies);
+		if (!isReady(animation))
+			return false;
+		drawAnimation(g, startTime, 4500, animation, width, height);
+		return true;
+	}
+
+	private static Animation combatAnimation(int nbEnemies) {
+		return switch (nbEnemies) {
 		case 1 -> fightingAnimation1;
 		case 2 -> fightingAnimation2;
 		case 3 -> fightingAnimation3;
 		default -> fightingAnimation1;
 		};
-		drawAnimation(g, startTime, 4500, animation);
 	}
 
-	private void drawCombatScene(Graphics2D g, int nbEnemies, int status, List<Enemy> enemies) {
+	private void drawCombatScene(Graphics2D g, int nbEnemies, int status, List<Enemy> enemies, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
 		if (nbEnemies > 0 && enemies.get(0).hp() < enemies.get(0).maxHp()) {
-			drawInjuredRat(g, nbEnemies, status);
+			drawInjuredRat(g, nbEnemies, status, width, height);
 		} else {
-			drawCombat(g, nbEnemies, status);
+			drawCombat(g, nbEnemies, status, width, height);
 		}
+		profiler.leave(outer);
 	}
 
-	private void drawAllBars(Graphics2D g, Hero hero, List<Enemy> enemies) {
-		drawHeroStats(g, hero);
-		drawEnemyHealthBars(g, enemies);
+	private void drawAllBars(Graphics2D g, HeroStats hero, List<Enemy> enemies, int width, int height) {
+		drawHeroStats(g, hero, width, height);
+		drawEnemyHealthBars(g, enemies, width);
 	}
 
-	private void drawAllHeroBars(Graphics2D g, Hero hero) {
-		drawHeroStats(g, hero);
+	private void drawAllHeroBars(Graphics2D g, HeroStats hero, int width, int height) {
+		drawHeroStats(g, hero, width, height);
 	}
 
 	// ===================== ANIMATIONS =====================
@@ -322,141 +573,183 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		return System.currentTimeMillis() - startTime < duration;
 	}
 
-	private void drawAnimation(Graphics2D g, long startTime, int duration, List<BufferedImage> frames) {
+	/**
+	 * An animation is missing while the assets load in the background, and
+	 * streamed animations are not ready until their first frame is decoded.
+	 */
+	private static boolean isReady(Animation animation) {
+		return animation != null && animation.frameCount() > 0 && animation.isReady();
+	}
+
+	private void drawAnimation(Graphics2D g, long startTime, int duration, Animation animation, int width, int height) {
 		long elapsed = System.currentTimeMillis() - startTime;
 		if (elapsed > duration)
 			return;
 
-		int frameIndex = (int) ((elapsed * frames.size()) / duration);
-		frameIndex = Math.min(frameIndex, frames.size() - 1);
+		Phase outer = profiler.enter(Phase.ANIMATIONS);
+		int frameIndex = (int) ((elapsed * animation.frameCount()) / duration);
+		frameIndex = Math.min(frameIndex, animation.frameCount() - 1);
 
-		var info = context.getScreenInfo();
-		g.drawImage(frames.get(frameIndex), 0, 0, info.width(), info.height(), null);
+		drawImage(g, animation.frame(frameIndex), 0, 0, width, height);
+		profiler.leave(outer);
+	}
+
+	/**
+	 * @return the frame of the animation displayed now, or -1 if it is not
+	 *         displayed
+	 */
+	private static int animationFrame(long startTime, int duration, Animation animation) {
+		long elapsed = System.currentTimeMillis() - startTime;
+		if (elapsed > duration || !isReady(animation))
+			return -1;
+		return (int) Math.min((elapsed * animation.frameCount()) / duration, animation.frameCount() - 1);
 	}
 
 	// ===================== BACKGROUNDS =====================
-	private void drawEmptyRoom(Graphics2D g) {
-		var info = context.getScreenInfo();
-		g.drawImage(enemyRoomImage0, 0, 0, info.width(), info.height(), null);
+	private void drawEmptyRoom(Graphics2D g, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
+		drawAsset(g, BACKGROUNDS, ENEMY_ROOM_IMAGE_0, 0, 0, width, height);
+		profiler.leave(outer);
 	}
 
-	private void drawTreasure(Graphics2D g) {
-		var info = context.getScreenInfo();
-		int w = info.width(), h = info.height();
-		g.drawImage(treasureRoomImage, 0, 0, w, h, null);
-		g.drawImage(treasureImage, w / 2, h / 2, w / 2, h / 2, null);
+	private void drawTreasure(Graphics2D g, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
+		drawAsset(g, BACKGROUNDS, TREASURE_ROOM_IMAGE, 0, 0, width, height);
+		drawAsset(g, SPRITES, TREASURE_IMAGE, width / 2, height / 2, width / 2, height / 2);
+		profiler.leave(outer);
 	}
 
-	private void drawHero(Graphics2D g) {
-		var info = context.getScreenInfo();
-		g.drawImage(heroImage2, info.width() / 4, info.height() / 4, info.width(), info.height(), null);
+	private void drawHero(Graphics2D g, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
+		drawAsset(g, SPRITES, HERO_IMAGE_2, width / 4, height / 4, width, height);
+		profiler.leave(outer);
 	}
 
-	private void drawCorridor(Graphics2D g) {
-		var info = context.getScreenInfo();
-		g.drawImage(corridorImage, 0, 0, info.width(), info.height(), null);
+	private void drawCorridor(Graphics2D g, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
+		drawAsset(g, BACKGROUNDS, CORRIDOR_IMAGE, 0, 0, width, height);
+		profiler.leave(outer);
 	}
 
-	private void drawInjuredRat(Graphics2D g, int nbEnemies, int status) {
-		var info = context.getScreenInfo();
-		BufferedImage bg = switch (nbEnemies) {
-		case 1 -> injuredEnemy;
-		case 2 -> enemyRoomImage2;
-		case 3 -> enemyRoomImage3;
-		default -> enemyRoomImage3;
+	private void drawInjuredRat(Graphics2D g, int nbEnemies, int status, int width, int height) {
+		String bg = switch (nbEnemies) {
+		case 1 -> INJURED_ENEMY_IMAGE;
+		case 2 -> ENEMY_ROOM_IMAGE_2;
+		case 3 -> ENEMY_ROOM_IMAGE_3;
+		default -> ENEMY_ROOM_IMAGE_3;
 		};
-		g.drawImage(bg, 0, 0, info.width(), info.height(), null);
-		drawBattleBanner(g, status);
+		drawAsset(g, BACKGROUNDS, bg, 0, 0, width, height);
+		drawBattleBanner(g, status, width, height);
 	}
 
-	private void drawCombat(Graphics2D g, int nbEnemies, int status) {
-		var info = context.getScreenInfo();
-		BufferedImage bg = switch (nbEnemies) {
-		case 1 -> enemyRoomImage1;
-		case 2 -> enemyRoomImage2;
-		case 3 -> enemyRoomImage3;
-		default -> enemyRoomImage3;
+	private void drawCombat(Graphics2D g, int nbEnemies, int status, int width, int height) {
+		String bg = switch (nbEnemies) {
+		case 1 -> ENEMY_ROOM_IMAGE_1;
+		case 2 -> ENEMY_ROOM_IMAGE_2;
+		case 3 -> ENEMY_ROOM_IMAGE_3;
+		default -> ENEMY_ROOM_IMAGE_3;
 		};
-		g.drawImage(bg, 0, 0, info.width(), info.height(), null);
-		drawBattleBanner(g, status);
+		drawAsset(g, BACKGROUNDS, bg, 0, 0, width, height);
+		drawBattleBanner(g, status, width, height);
 	}
 
-	private void drawBattleBanner(Graphics2D g, int status) {
-		var info = context.getScreenInfo();
-		int bannerW = info.width() / 5;
-		int bannerH = info.height() / 5;
-		int x = (info.width() - bannerW) / 2;
-		int y = info.height() - bannerH - info.height() / 50;
-
-		BufferedImage banner = switch (status) {
-		case 0 -> attackOrDefenseBanner;
-		case 1 -> attackBanner;
-		case 2 -> defendBanner;
+	private void drawBattleBanner(Graphics2D g, int status, int width, int height) {
+		int bannerW = width / 5;
+		int bannerH = height / 5;
+		int x = (width - bannerW) / 2;
+		int y = height - bannerH - height / 50;
+
+		String banner = switch (status) {
+		case 0 -> ATTACK_OR_DEFENSE_BANNER;
+		case 1 -> ATTACK_BANNER;
+		case 2 -> DEFEND_BANNER;
 		default -> throw new IllegalArgumentException("Invalid status: " + status);
 		};
-		g.drawImage(banner, x, y, bannerW, bannerH, null);
+		drawAsset(g, SPRITES, banner, x, y, bannerW, bannerH);
 	}
 
 	// ===================== GRID (MAP) =====================
-	private void drawGrid(Graphics2D g, GameController controller) {
-		var adjacents = floor.adjacentRooms();
+	/**
+	 * Draws the map. The cells only change with the dungeon, they are painted
+	 * once in a layer and the player and its path are drawn over it.
+	 */
+	private void drawGrid(Graphics2D g, ViewState state) {
+		Phase outer = profiler.enter(Phase.GRID);
+		MapState map = state.map();
+		Graphics2D lg = layers.begin(g, Layer.MAP, 0, 0, mapWidth(), mapHeight(map), map.version());
+		if (lg != null) {
+			try {
+				drawRoomCells(lg, map);
+			} finally {
+				layers.end(lg);
+			}
+		}
+		layers.draw(g, Layer.MAP);
 
+		PlayerState player = state.player();
+		drawAnimatedPlayer(g, player, map);
 
-		for (int i = 0; i < floor.rooms().size(); i++) {
-			boolean isAdjacent = adjacents.contains(i);
-			boolean isAccessible = floor.isRoomAccessible(i);
 
-			drawRoomCell(g, i, floor.rooms().get(i), isAdjacent, isAccessible);
+		if (player.followingPath()) {
+			drawPath(g, player.path(), player.pathIndex());
 		}
+		profiler.leave(outer);
+	}
 
-		
-		drawAnimatedPlayer(g, controller);
-
+	private void drawRoomCells(Graphics2D g, MapState map) {
+		var adjacents = map.adjacentRooms();
+		for (int i = 0; i < map.rooms().size(); i++) {
+			boolean isAdjacent = adjacents.contains(i);
+			boolean isAccessible = map.accessible()[i];
 
-		if (controller.isFollowingPath()) {
-			drawPath(g, controller.getCurrentPath(), controller.getPathIndex());
+			drawRoomCell(g, i, map.rooms().get(i), isAdjacent, isAccessible, map.playerIndex());
 		}
 	}
 
+	private int mapWidth() {
+		return GRID_PADDING + GRID_COLS * (GRID_CELL_SIZE + GRID_PADDING);
+	}
+
+	private int mapHeight(MapState map) {
+		int rows = (map.rooms().size() + GRID_COLS - 1) / GRID_COLS;
+		return GRID_PADDING + rows * (GRID_CELL_SIZE + GRID_PADDING);
+	}
+
 	private void drawPath(Graphics2D g, List<Integer> path, int currentIndex) {
 		if (path == null || path.isEmpty())
 			return;
 
-		g.setColor(new Color(255, 255, 0, 100)); // Yellow
-		g.setStroke(new java.awt.BasicStroke(4));
+		g.setColor(PATH_COLOR); // Yellow
+		g.setStroke(PATH_STROKE);
 
 		for (int i = currentIndex; i < path.size() - 1; i++) {
-			int[] from = getCellPosition(path.get(i));
-			int[] to = getCellPosition(path.get(i + 1));
+			int from = path.get(i);
+			int to = path.get(i + 1);
 
-			int fromX = from[0] + GRID_CELL_SIZE / 2;
-			int fromY = from[1] + GRID_CELL_SIZE / 2;
-			int toX = to[0] + GRID_CELL_SIZE / 2;
-			int toY = to[1] + GRID_CELL_SIZE / 2;
+			int fromX = cellX(from) + GRID_CELL_SIZE / 2;
+			int fromY = cellY(from) + GRID_CELL_SIZE / 2;
+			int toX = cellX(to) + GRID_CELL_SIZE / 2;
+			int toY = cellY(to) + GRID_CELL_SIZE / 2;
 
 			g.drawLine(fromX, fromY, toX, toY);
 		}
 
-		g.setStroke(new java.awt.BasicStroke(1));
+		g.setStroke(THIN_STROKE);
 	}
 
-	private void drawAnimatedPlayer(Graphics2D g, GameController controller) {
+	private void drawAnimatedPlayer(Graphics2D g, PlayerState player, MapState map) {
 		int currentIndex;
 		int imgSize = GRID_CELL_SIZE / 2;
 
-		if (controller.isPlayerMoving()) {
+		if (player.moving()) {
 
-			float progress = controller.getPlayerAnimationProgress();
-			int startIdx = controller.getPlayerStartIndex();
-			int targetIdx = controller.getPlayerTargetIndex();
+			float progress = player.progress();
+			int startIdx = player.startIndex();
+			int targetIdx = player.targetIndex();
 
 	
-			int[] startPos = getCellPosition(startIdx);
-			int[] targetPos = getCellPosition(targetIdx);
-
-		
-			int x = (int) (startPos[0] + (targetPos[0] - startPos[0]) * progress);
-			int y = (int) (startPos[1] + (targetPos[1] - startPos[1]) * progress);
+			int x = (int) (cellX(startIdx) + (cellX(targetIdx) - cellX(startIdx)) * progress);
+			int y = (int) (cellY(startIdx) + (cellY(targetIdx) - cellY(startIdx)) * progress);
 
 
 			int offset = (GRID_CELL_SIZE - imgSize) / 2;
@@ -464,46 +757,45 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 			y += offset;
 
 			g.setColor(Color.RED);
-			g.drawImage(heroImage, x, y, imgSize, imgSize, null);
+			drawAsset(g, SPRITES, HERO_IMAGE, x, y, imgSize, imgSize);
 		} else {
 
-			currentIndex = floor.playerIndex();
-			int[] pos = getCellPosition(currentIndex);
+			currentIndex = map.playerIndex();
 			int offset = (GRID_CELL_SIZE - imgSize) / 2;
 
 			g.setColor(Color.RED);
-			g.drawImage(heroImage, pos[0] + offset, pos[1] + offset, imgSize, imgSize, null);
+			drawAsset(g, SPRITES, HERO_IMAGE, cellX(currentIndex) + offset, cellY(currentIndex) + offset, imgSize,
+					imgSize);
 		}
 	}
 
-	private int[] getCellPosition(int index) {
-		int row = index / GRID_COLS;
-		int col = index % GRID_COLS;
-		int x = GRID_PADDING + col * (GRID_CELL_SIZE + GRID_PADDING);
-		int y = GRID_PADDING + row * (GRID_CELL_SIZE + GRID_PADDING);
-		return new int[] { x, y };
+	private static int cellX(int index) {
+		return GRID_PADDING + (index % GRID_COLS) * (GRID_CELL_SIZE + GRID_PADDING);
 	}
 
-	private void drawRoomCell(Graphics2D g, int index, Room room, boolean isAdjacent, boolean isAccessible) {
-		int row = index / GRID_COLS;
-		int col = index % GRID_COLS;
-		int x = GRID_PADDING + col * (GRID_CELL_SIZE + GRID_PADDING);
-		int y = GRID_PADDING + row * (GRID_CELL_SIZE + GRID_PADDING);
+	private static int cellY(int index) {
+		return GRID_PADDING + (index / GRID_COLS) * (GRID_CELL_SIZE + GRID_PADDING);
+	}
+
+	private void drawRoomCell(Graphics2D g, int index, Room room, boolean isAdjacent, boolean isAccessible,
+			int playerIndex) {
+		int x = cellX(index);
+		int y = cellY(index);
 
 		Color color;
 		if (isAdjacent) {
 			color = Color.GREEN;
-		} else if (isAccessible && index != floor.playerIndex()) {
-			color = new Color(100, 255, 100); // Green = availablke 
+		} else if (isAccessible && index != playerIndex) {
+			color = ACCESSIBLE_ROOM_COLOR; // Green = availablke 
 		} else {
 			color = getRoomColor(room);
 		}
 
 		g.setColor(color);
-		g.fill(new Rectangle2D.Float(x, y, GRID_CELL_SIZE, GRID_CELL_SIZE));
+		g.fillRect(x, y, GRID_CELL_SIZE, GRID_CELL_SIZE);
 
 		g.setColor(Color.BLACK);
-		g.draw(new Rectangle2D.Float(x, y, GRID_CELL_SIZE, GRID_CELL_SIZE));
+		g.drawRect(x, y, GRID_CELL_SIZE, GRID_CELL_SIZE);
 
 		g.setColor(Color.BLACK);
 		g.drawString(room.name(), x + 8, y + GRID_CELL_SIZE / 2);
@@ -511,12 +803,12 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 	private Color getRoomColor(Room room) {
 		return switch (room.type()) {
-		case ENEMY -> new Color(200, 80, 80);
-		case TREASURE -> new Color(250, 220, 80);
-		case MERCHANT -> new Color(80, 180, 250);
-		case HEALER -> new Color(100, 220, 100);
-		case EXIT -> new Color(180, 80, 250);
-		default -> new Color(180, 180, 180);
+		case ENEMY -> ENEMY_ROOM_COLOR;
+		case TREASURE -> TREASURE_ROOM_COLOR;
+		case MERCHANT -> MERCHANT_ROOM_COLOR;
+		case HEALER -> HEALER_ROOM_COLOR;
+		case EXIT -> EXIT_ROOM_COLOR;
+		default -> OTHER_ROOM_COLOR;
 		};
 	}
 
@@ -524,50 +816,89 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		g.setColor(Color.RED);
 		int imgSize = GRID_CELL_SIZE / 2;
 		int offset = (GRID_CELL_SIZE - imgSize) / 2;
-		g.drawImage(heroImage, x + offset, y + offset, imgSize, imgSize, null);
+		drawAsset(g, SPRITES, HERO_IMAGE, x + offset, y + offset, imgSize, imgSize);
 	}
 
 	// ===================== BACKPACK =====================
-	private void drawBackPack(Graphics2D g, List<Integer> selectedSlots, boolean isDragging, Item draggedItem,
-			int dragOffsetX, int dragOffsetY) {
-		g.setColor(Color.BLACK);
-		g.drawString("Backpack :", BACKPACK_ORIGIN_X, BACKPACK_ORIGIN_Y - 10);
+	/**
+	 * Draws the backpack. Its cells and items are painted in a layer again only
+	 * when the backpack, the selection or the dragged item change.
+	 */
+	private void drawBackPack(Graphics2D g, ViewState state) {
+		Phase outer = profiler.enter(Phase.BACKPACK);
+		BackPack backpack = state.backpack();
+		List<Integer> selectedSlots = state.selectedSlots();
+		DragState drag = state.drag();
+		boolean isDragging = drag.dragging();
+		Item draggedItem = drag.item();
+		long key = mix(mix(backpack.version(), selectedSlots.hashCode()),
+				isDragging ? System.identityHashCode(draggedItem) : 0);
+		Graphics2D lg = layers.begin(g, Layer.BACKPACK, backpackX(), backpackY(), backpackWidth(backpack),
+				backpackHeight(backpack), key);
+		if (lg != null) {
+			try {
+				lg.setColor(Color.BLACK);
+				lg.drawString("Backpack :", BACKPACK_ORIGIN_X, BACKPACK_ORIGIN_Y - 10);
+				drawBackpackCells(lg, backpack, selectedSlots, isDragging, draggedItem);
+				drawBackpackItems(lg, backpack, isDragging, draggedItem);
+			} finally {
+				layers.end(lg);
+			}
+		}
+		layers.draw(g, Layer.BACKPACK);
 
-		drawBackpackCells(g, selectedSlots, isDragging, draggedItem);
-		drawBackpackItems(g, isDragging, draggedItem);
 		if (isDragging && draggedItem != null) {
-			drawDraggedItem(g, draggedItem, dragOffsetX, dragOffsetY);
+			drawDraggedItem(g, draggedItem, drag.x(), drag.y());
 		}
+		profiler.leave(outer);
 	}
 
-	private void drawBackpackCells(Graphics2D g, List<Integer> selectedSlots, boolean isDragging, Item draggedItem) {
+	/** Bounds of the backpack with its label and the borders of the selected cells */
+	private int backpackX() {
+		return BACKPACK_ORIGIN_X - 2;
+	}
+
+	private int backpackY() {
+		return BACKPACK_ORIGIN_Y - 30;
+	}
+
+	private int backpackWidth(BackPack backpack) {
+		return backpack.width() * (CELL_SIZE + PADDING) + 4;
+	}
+
+	private int backpackHeight(BackPack backpack) {
+		return backpack.height() * (CELL_SIZE + PADDING) + 34;
+	}
+
+	private void drawBackpackCells(Graphics2D g, BackPack backpack, List<Integer> selectedSlots, boolean isDragging,
+			Item draggedItem) {
 		Item[][] grid = backpack.grid();
 		for (int y = 0; y < backpack.height(); y++) {
 			for (int x = 0; x < backpack.width(); x++) {
-				drawBackpackCell(g, x, y, grid[y][x], selectedSlots, isDragging, draggedItem);
+				drawBackpackCell(g, backpack, x, y, grid[y][x], selectedSlots, isDragging, draggedItem);
 			}
 		}
 	}
 
-	private void drawBackpackCell(Graphics2D g, int x, int y, Item item, List<Integer> selectedSlots, boolean isDragging,
-			Item draggedItem) {
+	private void drawBackpackCell(Graphics2D g, BackPack backpack, int x, int y, Item item, List<Integer> selectedSlots,
+			boolean isDragging, Item draggedItem) {
 		int cellX = BACKPACK_ORIGIN_X + x * (CELL_SIZE + PADDING);
 		int cellY = BACKPACK_ORIGIN_Y + y * (CELL_SIZE + PADDING);
 		boolean isUnlocked = backpack.isUnlocked(x, y);
 
 		Color color = getCellColor(isUnlocked, item, isDragging, draggedItem);
 		g.setColor(color);
-		g.fill(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+		g.fillRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 
 		g.setColor(item != null && item != draggedItem ? Color.GRAY : Color.BLACK);
-		g.draw(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+		g.drawRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 
 		if (!isUnlocked) {
 			drawLock(g, cellX, cellY);
 		}
 
 		int slot = y * backpack.width() + x;
-		if (selectedSlots != null && selectedSlots.contains(slot) && isUnlocked && item == null) {
+		if (selectedSlots.contains(slot) && isUnlocked && item == null) {
 			g.setColor(Color.RED);
 			g.drawRect(cellX - 2, cellY - 2, CELL_SIZE + 4, CELL_SIZE + 4);
 		}
@@ -575,7 +906,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 	private Color getCellColor(boolean isUnlocked, Item item, boolean isDragging, Item draggedItem) {
 		if (!isUnlocked)
-			return new Color(60, 60, 60);
+			return LOCKED_CELL_COLOR;
 		if (isDragging && item == draggedItem)
 			return Color.YELLOW;
 		if (item == null)
@@ -589,7 +920,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		g.fillRect(cellX + lockSize, cellY + lockSize, lockSize, lockSize);
 	}
 
-	private void drawBackpackItems(Graphics2D g, boolean isDragging, Item draggedItem) {
+	private void drawBackpackItems(Graphics2D g, BackPack backpack, boolean isDragging, Item draggedItem) {
 		Item[][] grid = backpack.grid();
 		for (int y = 0; y < backpack.height(); y++) {
 			for (int x = 0; x < backpack.width(); x++) {
@@ -607,16 +938,17 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 	}
 
 	// ===================== EXPANSION MODE =====================
-	private void drawBackPackWithExpansion(Graphics2D g, List<Integer> selectedSlots,
-			BackpackExpansionSystem expansionSystem) {
-		drawExpansionInstructions(g, expansionSystem);
-		drawExpansionCells(g, expansionSystem);
-		drawExpansionItems(g);
+	private void drawBackPackWithExpansion(Graphics2D g, BackPack backpack, ExpansionState expansion) {
+		Phase outer = profiler.enter(Phase.BACKPACK);
+		drawExpansionInstructions(g, backpack, expansion);
+		drawExpansionCells(g, backpack, expansion);
+		drawExpansionItems(g, backpack);
+		profiler.leave(outer);
 	}
 
-	private void drawExpansionInstructions(Graphics2D g, BackpackExpansionSystem expansionSystem) {
+	private void drawExpansionInstructions(Graphics2D g, BackPack backpack, ExpansionState expansion) {
 		g.setColor(Color.WHITE);
-		g.drawString("EXPANSION DU SAC - " + expansionSystem.getPendingUnlocks() + " case(s) à débloquer",
+		g.drawString("EXPANSION DU SAC - " + expansion.pendingUnlocks() + " case(s) à débloquer",
 				BACKPACK_ORIGIN_X, BACKPACK_ORIGIN_Y - 30);
 		g.drawString("Cliquez sur une case verte pour la débloquer", BACKPACK_ORIGIN_X, BACKPACK_ORIGIN_Y - 10);
 		g.setColor(Color.YELLOW);
@@ -624,25 +956,26 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 				BACKPACK_ORIGIN_Y + (backpack.height() + 1) * (CELL_SIZE + PADDING));
 	}
 
-	private void drawExpansionCells(Graphics2D g, BackpackExpansionSystem expansionSystem) {
+	private void drawExpansionCells(Graphics2D g, BackPack backpack, ExpansionState expansion) {
 		Item[][] grid = backpack.grid();
 		for (int y = 0; y < backpack.height(); y++) {
 			for (int x = 0; x < backpack.width(); x++) {
-				drawExpansionCell(g, x, y, grid[y][x], expansionSystem);
+				drawExpansionCell(g, backpack, x, y, grid[y][x], expansion);
 			}
 		}
 	}
 
-	private void drawExpansionCell(Graphics2D g, int x, int y, Item item, BackpackExpansionSystem expansionSystem) {
+	private void drawExpansionCell(Graphics2D g, BackPack backpack, int x, int y, Item item,
+			ExpansionState expansion) {
 		int cellX = BACKPACK_ORIGIN_X + x * (CELL_SIZE + PADDING);
 		int cellY = BACKPACK_ORIGIN_Y + y * (CELL_SIZE + PADDING);
 
 		boolean isUnlocked = backpack.isUnlocked(x, y);
-		boolean isExpandable = expansionSystem.isExpansionAvailable(x, y);
+		boolean isExpandable = expansion.available()[y][x];
 
 		Color color = getExpansionCellColor(isUnlocked, isExpandable, item);
 		g.setColor(color);
-		g.fill(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+		g.fillRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 
 		drawExpansionBorder(g, cellX, cellY, isExpandable);
 
@@ -653,25 +986,25 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 	private Color getExpansionCellColor(boolean isUnlocked, boolean isExpandable, Item item) {
 		if (isExpandable)
-			return new Color(0, 255, 0, 150);
+			return EXPANDABLE_CELL_COLOR;
 		if (isUnlocked)
 			return item == null ? Color.YELLOW : Color.BLACK;
-		return new Color(80, 80, 80);
+		return CLOSED_CELL_COLOR;
 	}
 
 	private void drawExpansionBorder(Graphics2D g, int cellX, int cellY, boolean isExpandable) {
 		if (isExpandable) {
 			g.setColor(Color.GREEN);
-			g.setStroke(new java.awt.BasicStroke(3));
+			g.setStroke(THICK_STROKE);
 		} else {
 			g.setColor(Color.BLACK);
-			g.setStroke(new java.awt.BasicStroke(1));
+			g.setStroke(THIN_STROKE);
 		}
-		g.draw(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
-		g.setStroke(new java.awt.BasicStroke(1));
+		g.drawRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
+		g.setStroke(THIN_STROKE);
 	}
 
-	private void drawExpansionItems(Graphics2D g) {
+	private void drawExpansionItems(Graphics2D g, BackPack backpack) {
 		Item[][] grid = backpack.grid();
 		for (int y = 0; y < backpack.height(); y++) {
 			for (int x = 0; x < backpack.width(); x++) {
@@ -686,56 +1019,66 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 	}
 
 	// ===================== TREASURE CHEST =====================
-	public void drawTreasureChest(Graphics2D g, Item[][] treasureGrid, List<Integer> selectedSlots, boolean isDragging,
-			Item draggedItem, int dragOffsetX, int dragOffsetY) {
-		var coords = getTreasureCoords();
+	private void drawTreasureChest(Graphics2D g, Item[][] treasureGrid, DragState drag, int width, int height) {
+		Phase outer = profiler.enter(Phase.ITEMS);
+		boolean isDragging = drag.dragging();
+		Item draggedItem = drag.item();
+		int gridX = roomGridX(width);
+		int gridY = roomGridY(height);
 
 		g.setColor(Color.BLACK);
-		g.drawString("Coffre au trésor :", coords[0], coords[1] - 10);
+		g.drawString("Coffre au trésor (L pour tout prendre) :", gridX, gridY - 10);
 
-		drawTreasureCells(g, treasureGrid, coords, isDragging, draggedItem);
-		drawTreasureItems(g, treasureGrid, coords, isDragging, draggedItem);
+		drawTreasureCells(g, treasureGrid, gridX, gridY, isDragging, draggedItem);
+		drawTreasureItems(g, treasureGrid, gridX, gridY, isDragging, draggedItem);
 
 		if (isDragging && draggedItem != null) {
-			drawDraggedItem(g, draggedItem, dragOffsetX, dragOffsetY);
+			drawDraggedItem(g, draggedItem, drag.x(), drag.y());
 		}
+		profiler.leave(outer);
 	}
 
-	private int[] getTreasureCoords() {
-		var info = context.getScreenInfo();
-		int chestX = info.width() / 2 - 100;
-		int chestY = info.height() / 3 - 75;
-		return new int[] { chestX, chestY + 170 };
+	/** Left of the grid of the treasure chest, and of the merchant stock */
+	private int roomGridX(int width) {
+		return width / 2 - 100;
 	}
 
-	private void drawTreasureCells(Graphics2D g, Item[][] grid, int[] coords, boolean isDragging, Item draggedItem) {
+	/** Top of the grid of the treasure chest, below the chest */
+	private int roomGridY(int height) {
+		int chestY = height / 3 - 75;
+		return chestY + 170;
+	}
+
+	private void drawTreasureCells(Graphics2D g, Item[][] grid, int gridX, int gridY, boolean isDragging,
+			Item draggedItem) {
 		for (int y = 0; y < grid.length; y++) {
 			for (int x = 0; x < grid[0].length; x++) {
-				drawTreasureCell(g, x, y, grid[y][x], coords, isDragging, draggedItem);
+				drawTreasureCell(g, x, y, grid[y][x], gridX, gridY, isDragging, draggedItem);
 			}
 		}
 	}
 
-	private void drawTreasureCell(Graphics2D g, int x, int y, Item item, int[] coords, boolean isDragging,
+	private void drawTreasureCell(Graphics2D g, int x, int y, Item item, int gridX, int gridY, boolean isDragging,
 			Item draggedItem) {
-		int cellX = coords[0] + x * (CELL_SIZE + PADDING);
-		int cellY = coords[1] + y * (CELL_SIZE + PADDING);
+		int cellX = gridX + x * (CELL_SIZE + PADDING);
+		int cellY = gridY + y * (CELL_SIZE + PADDING);
 
 		g.setColor(
-				isDragging && item == draggedItem ? Color.ORANGE : (item == null ? Color.ORANGE : new Color(255, 200, 100)));
-		g.fill(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+				isDragging && item == draggedItem ? Color.ORANGE : (item == null ? Color.ORANGE : TREASURE_ITEM_CELL_COLOR));
+		g.fillRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 
 		g.setColor(Color.BLACK);
-		g.draw(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+		g.drawRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 	}
 
-	private void drawTreasureItems(Graphics2D g, Item[][] grid, int[] coords, boolean isDragging, Item draggedItem) {
+	private void drawTreasureItems(Graphics2D g, Item[][] grid, int gridX, int gridY, boolean isDragging,
+			Item draggedItem) {
 		for (int y = 0; y < grid.length; y++) {
 			for (int x = 0; x < grid[0].length; x++) {
 				Item item = grid[y][x];
 				if (item != null && !(isDragging && item == draggedItem) && isItemTopLeft(grid, x, y, item)) {
-					int cellX = coords[0] + x * (CELL_SIZE + PADDING);
-					int cellY = coords[1] + y * (CELL_SIZE + PADDING);
+					int cellX = gridX + x * (CELL_SIZE + PADDING);
+					int cellY = gridY + y * (CELL_SIZE + PADDING);
 					drawItem(g, item, cellX, cellY);
 				}
 			}
@@ -744,60 +1087,65 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 	// ===================== MERCHANT =====================
 
-	public void drawMerchantStock(Graphics2D g, Item[][] merchantGrid, List<Integer> selectedSlots, boolean isDragging,
-			Item draggedItem, int dragOffsetX, int dragOffsetY) {
-		var coords = getTreasureCoords(); // Même position que trésor
-		drawMerchantHeader(g, coords);
-		drawMerchantCells(g, merchantGrid, coords, isDragging, draggedItem);
-		drawMerchantItems(g, merchantGrid, coords, isDragging, draggedItem);
+	private void drawMerchantStock(Graphics2D g, Item[][] merchantGrid, DragState drag, int width, int height) {
+		Phase outer = profiler.enter(Phase.ITEMS);
+		boolean isDragging = drag.dragging();
+		Item draggedItem = drag.item();
+		int gridX = roomGridX(width); // Même position que trésor
+		int gridY = roomGridY(height);
+		drawMerchantHeader(g, gridX, gridY);
+		drawMerchantCells(g, merchantGrid, gridX, gridY, isDragging, draggedItem);
+		drawMerchantItems(g, merchantGrid, gridX, gridY, isDragging, draggedItem);
 
 		if (isDragging && draggedItem != null) {
-			drawDraggedItem(g, draggedItem, dragOffsetX, dragOffsetY);
+			drawDraggedItem(g, draggedItem, drag.x(), drag.y());
 		}
+		profiler.leave(outer);
 	}
 
-	private void drawMerchantBackground(Graphics2D g) {
-		var info = context.getScreenInfo();
-		BufferedImage img = merchantImage;
-		g.drawImage(img, 0, 0, info.width(), info.height(), null);
-
+	private void drawMerchantBackground(Graphics2D g, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
+		drawAsset(g, BACKGROUNDS, MERCHANT_IMAGE, 0, 0, width, height);
+		profiler.leave(outer);
 	}
 
-	private void drawMerchantHeader(Graphics2D g, int[] coords) {
+	private void drawMerchantHeader(Graphics2D g, int gridX, int gridY) {
 		g.setColor(Color.WHITE);
-		g.drawString("Stock du Marchand :", coords[0], coords[1] - 30);
+		g.drawString("Stock du Marchand :", gridX, gridY - 30);
 		g.setColor(Color.CYAN);
-		g.drawString("Cliquez pour acheter | Cliquez sur votre sac pour vendre", coords[0], coords[1] - 10);
+		g.drawString("Cliquez pour acheter | Cliquez sur votre sac pour vendre", gridX, gridY - 10);
 	}
 
-	private void drawMerchantCells(Graphics2D g, Item[][] grid, int[] coords, boolean isDragging, Item draggedItem) {
+	private void drawMerchantCells(Graphics2D g, Item[][] grid, int gridX, int gridY, boolean isDragging,
+			Item draggedItem) {
 		for (int y = 0; y < grid.length; y++) {
 			for (int x = 0; x < grid[0].length; x++) {
-				drawMerchantCell(g, x, y, grid[y][x], coords, isDragging, draggedItem);
+				drawMerchantCell(g, x, y, grid[y][x], gridX, gridY, isDragging, draggedItem);
 			}
 		}
 	}
 
-	private void drawMerchantCell(Graphics2D g, int x, int y, Item item, int[] coords, boolean isDragging,
+	private void drawMerchantCell(Graphics2D g, int x, int y, Item item, int gridX, int gridY, boolean isDragging,
 			Item draggedItem) {
-		int cellX = coords[0] + x * (CELL_SIZE + PADDING);
-		int cellY = coords[1] + y * (CELL_SIZE + PADDING);
+		int cellX = gridX + x * (CELL_SIZE + PADDING);
+		int cellY = gridY + y * (CELL_SIZE + PADDING);
 
-		g.setColor(isDragging && item == draggedItem ? new Color(100, 200, 255)
-				: (item == null ? new Color(100, 200, 255) : new Color(150, 220, 255)));
-		g.fill(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+		g.setColor(isDragging && item == draggedItem ? MERCHANT_CELL_COLOR
+				: (item == null ? MERCHANT_CELL_COLOR : MERCHANT_ITEM_CELL_COLOR));
+		g.fillRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 
 		g.setColor(Color.BLACK);
-		g.draw(new Rectangle2D.Float(cellX, cellY, CELL_SIZE, CELL_SIZE));
+		g.drawRect(cellX, cellY, CELL_SIZE, CELL_SIZE);
 	}
 
-	private void drawMerchantItems(Graphics2D g, Item[][] grid, int[] coords, boolean isDragging, Item draggedItem) {
+	private void drawMerchantItems(Graphics2D g, Item[][] grid, int gridX, int gridY, boolean isDragging,
+			Item draggedItem) {
 		for (int y = 0; y < grid.length; y++) {
 			for (int x = 0; x < grid[0].length; x++) {
 				Item item = grid[y][x];
 				if (item != null && !(isDragging && item == draggedItem) && isItemTopLeft(grid, x, y, item)) {
-					int cellX = coords[0] + x * (CELL_SIZE + PADDING);
-					int cellY = coords[1] + y * (CELL_SIZE + PADDING);
+					int cellX = gridX + x * (CELL_SIZE + PADDING);
+					int cellY = gridY + y * (CELL_SIZE + PADDING);
 					drawMerchantItem(g, item, cellX, cellY);
 				}
 			}
@@ -805,6 +1153,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 	}
 
 	private void drawMerchantItem(Graphics2D g, Item item, int cellX, int cellY) {
+		Phase outer = profiler.enter(Phase.ITEMS);
 		int itemW = item.width() * (CELL_SIZE + PADDING) - PADDING;
 		int itemH = item.height() * (CELL_SIZE + PADDING) - PADDING;
 
@@ -812,46 +1161,43 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		drawItemPrice(g, item, cellX, cellY, itemW, itemH);
 		drawStackQuantity(g, item, cellX, cellY, itemW, Color.CYAN);
 
-		g.setColor(new Color(0, 0, 0, 150));
+		g.setColor(MERCHANT_ITEM_BORDER_COLOR);
 		g.drawRect(cellX, cellY, itemW, itemH);
+		profiler.leave(outer);
 	}
 
 	private void drawItemPrice(Graphics2D g, Item item, int x, int y, int w, int h) {
 		g.setColor(Color.BLACK);
 		g.fillRect(x, y + h - 18, w, 18);
 		g.setColor(Color.YELLOW);
-		g.drawString(item.price() + " $", x + 5, y + h - 5);
+		g.drawString(labels.text(item.price(), " $"), x + 5, y + h - 5);
 	}
 
 //===================== HEALERROOM=====================
 
-	private void drawHealerRoom(Graphics2D g, Hero hero, HealerRoom healerRoom) {
-		var info = context.getScreenInfo();
+	private void drawHealerRoom(Graphics2D g, HealerState healer, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
 
-		if (healerRoomImage != null) {
-			g.drawImage(healerRoomImage, 0, 0, info.width(), info.height(), null);
-		} else {
-			g.setColor(new Color(100, 150, 100));
-			g.fillRect(0, 0, info.width(), info.height());
-		}
+		g.setColor(HEALER_BACKGROUND_COLOR);
+		g.fillRect(0, 0, width, height);
 
 	
 		int buttonWidth = 200;
 		int buttonHeight = 80;
-		int buttonX = (info.width() - buttonWidth) / 2;
-		int buttonY = (info.height() - buttonHeight) / 2;
+		int buttonX = (width - buttonWidth) / 2;
+		int buttonY = (height - buttonHeight) / 2;
 
-		boolean canHeal = healerRoom.canHeal(hero);
+		boolean canHeal = healer.canHeal();
 
 	
-		g.setColor(canHeal ? new Color(100, 200, 100) : new Color(150, 150, 150));
+		g.setColor(canHeal ? HEAL_BUTTON_COLOR : DISABLED_BUTTON_COLOR);
 		g.fillRoundRect(buttonX, buttonY, buttonWidth, buttonHeight, 20, 20);
 
 
-		g.setColor(canHeal ? new Color(50, 150, 50) : new Color(100, 100, 100));
-		g.setStroke(new java.awt.BasicStroke(3));
+		g.setColor(canHeal ? HEAL_BUTTON_BORDER_COLOR : DISABLED_BUTTON_BORDER_COLOR);
+		g.setStroke(THICK_STROKE);
 		g.drawRoundRect(buttonX, buttonY, buttonWidth, buttonHeight, 20, 20);
-		g.setStroke(new java.awt.BasicStroke(1));
+		g.setStroke(THIN_STROKE);
 
 	
 		g.setColor(Color.WHITE);
@@ -860,20 +1206,22 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		g.drawString(text, buttonX + 30, buttonY + 35);
 
 
-		String cost = healerRoom.getHealCost() + "$ → +" + healerRoom.getHealAmount() + " HP";
+		String cost = labels.text(labels.text(healer.cost(), "$ → +"), healer.amount(), " HP");
 		g.drawString(cost, buttonX + 40, buttonY + 60);
 
 
 		if (!canHeal) {
 			
 			g.setColor(Color.YELLOW);
-			String msg = !hero.hasEnoughGold(healerRoom.getHealCost()) ? "Pas assez d'or" : "HP au maximum";
+			String msg = !healer.enoughGold() ? "Pas assez d'or" : "HP au maximum";
 			g.drawString(msg, buttonX + 40, buttonY + buttonHeight + 30);
 		}
+		profiler.leave(outer);
 	}
 
 	// ===================== ITEM RENDERING =====================
 	private void drawItem(Graphics2D g, Item item, int cellX, int cellY) {
+		Phase outer = profiler.enter(Phase.ITEMS);
 		int itemW = item.width() * (CELL_SIZE + PADDING) - PADDING;
 		int itemH = item.height() * (CELL_SIZE + PADDING) - PADDING;
 
@@ -883,59 +1231,41 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 		g.setColor(Color.BLACK);
 		g.drawRect(cellX, cellY, itemW, itemH);
+		profiler.leave(outer);
 	}
 
 	private void drawItemImage(Graphics2D g, Item item, int x, int y, int w, int h) {
-		String key = null;
-		var name = item.name().toLowerCase();
-		var damage = item.attackValue();
-
-		if (name.contains("sword") || name.contains("epee")) {
-			key = item.isRotated() ? "sword90" : "sword";
-		} else if (name.contains("bow") || name.contains("arc")) {
-			key = item.isRotated() ? "bow90" : "bow";
-		} else if (name.contains("shield") || name.contains("bouclier")) {
-			key = "shield";
-		} else if (name.contains("hachette")) {
-			key = item.isRotated() ? "hache90" : "hache";
-		} else if (name.contains("gold")) {
-			key = "gold";
-		} else if (name.contains("heal")) {
-			key = "heal";
-		} else if (name.contains("ration")) {
-			key = "ration";
-		}
-
-		if (key != null && !key.equals("shield") && !key.equals("gold") && !key.equals("heal") && !key.equals("ration")) {
-			if (damage >= 20) {
-				key += "o";
-			} else if (damage >= 10) {
-				key += "v";
-			}
-		}
-
-		BufferedImage img = (key != null) ? weaponAssets.get(key) : null;
+		BufferedImage img = itemSprites.sprite(item, w, h);
 		if (img != null) {
-			g.drawImage(img, x, y, w, h, null);
-		} else {
-			g.setColor(new Color(0, 0, 0, 0));
+			g.drawImage(img, x, y, null);
 		}
 	}
 
+	/**
+	 * Returns the decoded image of an item image key.
+	 *
+	 * @return the image, or null if the key has no image
+	 */
+	private static BufferedImage itemImage(String key) {
+		String file = weaponFiles.get(key);
+		return file == null ? null : loader.image(WEAPONS, file);
+	}
+
 	private void drawStackQuantity(Graphics2D g, Item item, int x, int y, int w, Color color) {
 		if (item.isStackable() && item.quantity() > 1) {
 			g.setColor(Color.BLACK);
 			g.fillRect(x + w - 26, y + 2, 24, 16);
 			g.setColor(color);
-			g.drawString(String.valueOf(item.quantity()), x + w - 22, y + 14);
+			g.drawString(labels.text(item.quantity(), ""), x + w - 22, y + 14);
 		}
 	}
 
 	private void drawDraggedItem(Graphics2D g, Item item, int mouseX, int mouseY) {
+		Phase outer = profiler.enter(Phase.ITEMS);
 		int itemW = item.width() * (CELL_SIZE + PADDING) - PADDING;
 		int itemH = item.height() * (CELL_SIZE + PADDING) - PADDING;
 
-		g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f));
+		g.setComposite(DRAGGED_ITEM_COMPOSITE);
 
 		if (item.isMalediction()) {
 			drawMaledictionShape(g, item, mouseX, mouseY, itemW, itemH, true);
@@ -944,16 +1274,29 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 			drawStackQuantity(g, item, mouseX, mouseY, itemW, Color.YELLOW);
 		}
 
-		g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
+		g.setComposite(AlphaComposite.SrcOver);
 		g.setColor(Color.BLACK);
 		g.drawRect(mouseX, mouseY, itemW, itemH);
+		profiler.leave(outer);
 	}
 
 	// ===================== FLOATING ITEMS =====================
-	private void drawFloatingItems(Graphics2D g, List<FloatingItem> floatingItems) {
-		for (FloatingItem fItem : floatingItems) {
-			drawFloatingItem(g, fItem);
+	/**
+	 * Draws the floating items. Only the items in the repainted part of the
+	 * screen are looked at.
+	 */
+	private void drawFloatingItems(Graphics2D g, FloatingItemIndex floatingItems, int width, int height) {
+		if (floatingItems.isEmpty()) {
+			return;
 		}
+
+		Phase outer = profiler.enter(Phase.ITEMS);
+		// the whole screen when there is no clip, read without allocating
+		Rectangle visible = regions.scratch();
+		visible.setBounds(0, 0, width, height);
+		g.getClipBounds(visible);
+		floatingItems.forEachIn(visible, fItem -> drawFloatingItem(g, fItem));
+		profiler.leave(outer);
 	}
 
 	private void drawFloatingItem(Graphics2D g, FloatingItem fItem) {
@@ -976,42 +1319,37 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 	}
 
 	// ===================== STATS BARS =====================
-	private void drawHeroStats(Graphics2D g, Hero hero) {
-		var info = context.getScreenInfo();
+	private void drawHeroStats(Graphics2D g, HeroStats hero, int width, int height) {
+		Phase outer = profiler.enter(Phase.BARS);
 
 		int barHeight = 15;
 		int sideBarWidth = 300;
-		int startX = info.width() - sideBarWidth - 25;
+		int startX = width - sideBarWidth - 25;
 		int currentY = 30;
 
 
-		drawBar(g, startX, currentY, sideBarWidth, barHeight, hero.hp(), hero.HeroMaxHp(), Color.RED, Color.GREEN, "HERO",
-				hero.hp() + " HP");
+		drawBar(g, startX, currentY, sideBarWidth, barHeight, hero.hp(), hero.maxHp(), Color.RED, Color.GREEN, "HERO",
+				labels.text(hero.hp(), " HP"));
 
 		currentY += 40;
 
 
 		drawBar(g, startX, currentY, sideBarWidth, barHeight, hero.protection(), 20, Color.DARK_GRAY,
-				new Color(100, 180, 255), "PROTECTION", hero.protection() + " DEF");
+				PROTECTION_COLOR, "PROTECTION", labels.text(hero.protection(), " DEF"));
 
 		currentY += 40;
 
 
-		drawBar(g, startX, currentY, sideBarWidth, barHeight, hero.currentStamina(), hero.maxStamina(), Color.DARK_GRAY,
-				Color.ORANGE, "STAMINA", hero.currentStamina() + " / " + hero.maxStamina());
+		drawBar(g, startX, currentY, sideBarWidth, barHeight, hero.stamina(), hero.maxStamina(), Color.DARK_GRAY,
+				Color.ORANGE, "STAMINA", labels.text(labels.text(hero.stamina(), " / "), hero.maxStamina(), ""));
 
 		
 		int expBarHeight = 20;
-		int expY = info.height() - expBarHeight - 10;
-		int currentLevel = hero.lvl(hero.exp());
+		int expY = height - expBarHeight - 10;
+		int currentLevel = hero.level();
 
-		float startExp = hero.getXpForLevel(currentLevel);
-		float endExp;
-		if (currentLevel >= 5) {
-			endExp = hero.maxExp();
-		} else {
-			endExp = hero.getXpForLevel(currentLevel + 1);
-		}
+		float startExp = hero.levelStartExp();
+		float endExp = hero.levelEndExp();
 
 		float currentExpInLevel = hero.exp() - startExp;
 		float totalExpNeededForLevel = endExp - startExp;
@@ -1019,9 +1357,12 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		if (totalExpNeededForLevel <= 0)
 			totalExpNeededForLevel = 1;
 
-		drawBar(g, 0, expY, info.width(), expBarHeight, currentExpInLevel, totalExpNeededForLevel, Color.BLACK,
-				new Color(255, 215, 0), null,
-				"Level : " + currentLevel + " | XP: " + (int) currentExpInLevel + " / " + (int) totalExpNeededForLevel);
+		// each part is cached, the label is only built again when a number changes
+		String level = labels.text("Level : ", currentLevel, " | XP: ");
+		String progress = labels.text(level, (int) currentExpInLevel, " / ");
+		drawBar(g, 0, expY, width, expBarHeight, currentExpInLevel, totalExpNeededForLevel, Color.BLACK,
+				EXPERIENCE_COLOR, null, labels.text(progress, (int) totalExpNeededForLevel, ""));
+		profiler.leave(outer);
 	}
 
 	private void drawBar(Graphics2D g, int x, int y, int width, int height, double current, double max, Color bgColor,
@@ -1046,7 +1387,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 		if (valueText != null) {
 			g.setColor(Color.WHITE);
-			int textWidth = g.getFontMetrics().stringWidth(valueText);
+			int textWidth = labels.width(g, valueText);
 			int textX = x + (width - textWidth) / 2;
 			int textY = y + height - 2;
 
@@ -1058,12 +1399,12 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		}
 	}
 
-	private void drawEnemyHealthBars(Graphics2D g, List<Enemy> enemies) {
+	private void drawEnemyHealthBars(Graphics2D g, List<Enemy> enemies, int width) {
 		if (enemies == null || enemies.isEmpty())
 			return;
 
-		var info = context.getScreenInfo();
-		int startX = info.width() - 250;
+		Phase outer = profiler.enter(Phase.BARS);
+		int startX = width - 250;
 		int startY = 200;
 		int barWidth = 200;
 		int spacing = 40;
@@ -1076,6 +1417,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 				currentY += spacing;
 			}
 		}
+		profiler.leave(outer);
 	}
 
 	private void drawEnemyBar(Graphics2D g, Enemy enemy, int num, int x, int y, int w) {
@@ -1083,7 +1425,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		int hpBarWidth = (int) (hpPercent * w);
 
 		g.setColor(Color.WHITE);
-		g.drawString(enemy.name() + num, x, y + 15);
+		g.drawString(labels.text(enemy.name(), num, ""), x, y + 15);
 
 		g.setColor(Color.RED);
 		g.fillRect(x, y + 20, w, 15);
@@ -1093,42 +1435,58 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 
 		g.setColor(Color.WHITE);
 		g.drawRect(x, y + 20, w, 15);
-		g.drawString(enemy.hp() + " HP", x + w / 2 - 20, y + 32);
+		g.drawString(labels.text(enemy.hp(), " HP"), x + w / 2 - 20, y + 32);
+	}
+
+	/**
+	 * Draws the bubble of each enemy action, with its border.
+	 */
+	private static Map<Battle.EnemyAction, BufferedImage> bubbleImages() {
+		var images = new EnumMap<Battle.EnemyAction, BufferedImage>(Battle.EnemyAction.class);
+		for (Battle.EnemyAction action : Battle.EnemyAction.values()) {
+			var image = new BufferedImage(BUBBLE_WIDTH + 2 * BUBBLE_MARGIN, BUBBLE_HEIGHT + 2 * BUBBLE_MARGIN,
+					BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			try {
+				g.setColor(BUBBLE_COLOR);
+				g.fillRoundRect(BUBBLE_MARGIN, BUBBLE_MARGIN, BUBBLE_WIDTH, BUBBLE_HEIGHT, 15, 15);
+
+				Color borderColor = switch (action) {
+				case ATTACK -> Color.RED;
+				case DEFEND -> Color.BLUE;
+				case MALEDICTION -> MALEDICTION_COLOR;
+				};
+				g.setColor(borderColor);
+				g.setStroke(MEDIUM_STROKE);
+				g.drawRoundRect(BUBBLE_MARGIN, BUBBLE_MARGIN, BUBBLE_WIDTH, BUBBLE_HEIGHT, 15, 15);
+			} finally {
+				g.dispose();
+			}
+			images.put(action, image);
+		}
+		return images;
 	}
 
-	private void drawEnemyActionBubbles(Graphics2D g, List<Battle.EnemyAction> actions, List<Enemy> enemies) {
+	private void drawEnemyActionBubbles(Graphics2D g, List<Battle.EnemyAction> actions, List<Enemy> enemies,
+			int width) {
 		if (actions == null || actions.isEmpty()) {
 			return;
 		}
 
-		var info = context.getScreenInfo();
-		int bubbleWidth = 100;
-		int bubbleHeight = 70;
+		Phase outer = profiler.enter(Phase.BARS);
 		int startY = 100;
 		int padding = 10;
 
-		int totalWidth = Math.min(actions.size(), 3) * (bubbleWidth + 20);
-		int startX = (info.width() - totalWidth) / 2;
+		int totalWidth = Math.min(actions.size(), 3) * (BUBBLE_WIDTH + 20);
+		int startX = (width - totalWidth) / 2;
 
 		for (int i = 0; i < Math.min(actions.size(), enemies.size()); i++) {
 			Enemy enemy = enemies.get(i);
 			if (enemy.isAlive()) {
 				Battle.EnemyAction action = actions.get(i);
-				int bubbleX = startX + i * (bubbleWidth + 20);
-
-				g.setColor(new Color(255, 255, 255, 230));
-				g.fillRoundRect(bubbleX, startY, bubbleWidth, bubbleHeight, 15, 15);
-
-				Color borderColor = switch (action) {
-				case ATTACK -> Color.RED;
-				case DEFEND -> Color.BLUE;
-				case MALEDICTION -> new Color(150, 50, 200);
-				};
-				g.setColor(borderColor);
-				g.setStroke(new java.awt.BasicStroke(2));
-				g.drawRoundRect(bubbleX, startY, bubbleWidth, bubbleHeight, 15, 15);
-				g.setStroke(new java.awt.BasicStroke(1));
+				int bubbleX = startX + i * (BUBBLE_WIDTH + 20);
 
+				g.drawImage(bubbles.get(action), bubbleX - BUBBLE_MARGIN, startY - BUBBLE_MARGIN, null);
 
 				g.setColor(Color.BLACK);
 				String text = switch (action) {
@@ -1139,13 +1497,14 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 				g.drawString(text, bubbleX + 50, startY + 25);
 
 				if (action == Battle.EnemyAction.ATTACK) {
-					String dmgText = enemy.attackDamage() + " DMG";
+					String dmgText = labels.text(enemy.attackDamage(), " DMG");
 				
 					g.setColor(Color.DARK_GRAY);
 					g.drawString(dmgText, bubbleX + 50, startY + 45);
 				}
 			}
 		}
+		profiler.leave(outer);
 	}
 
 	private void drawMaledictionShape(Graphics2D g, Item item, int x, int y, int w, int h, boolean isFloating) {
@@ -1159,7 +1518,7 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		int cellSize = isFloating ? CELL_SIZE : CELL_SIZE;
 		int spacing = isFloating ? PADDING : 0;
 
-		Color maledictionColor = isFloating ? new Color(150, 50, 200, 180) : new Color(120, 30, 180);
+		Color maledictionColor = isFloating ? FLOATING_MALEDICTION_COLOR : PLACED_MALEDICTION_COLOR;
 
 		for (int dy = 0; dy < item.height(); dy++) {
 			for (int dx = 0; dx < item.width(); dx++) {
@@ -1170,10 +1529,10 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 					g.setColor(maledictionColor);
 					g.fillRect(cellX, cellY, cellSize, cellSize);
 
-					g.setColor(new Color(200, 100, 255));
-					g.setStroke(new java.awt.BasicStroke(2));
+					g.setColor(MALEDICTION_BORDER_COLOR);
+					g.setStroke(MEDIUM_STROKE);
 					g.drawRect(cellX, cellY, cellSize, cellSize);
-					g.setStroke(new java.awt.BasicStroke(1));
+					g.setStroke(THIN_STROKE);
 
 					if (dx == 1 && dy == 0) {
 						g.setColor(Color.WHITE);
@@ -1186,6 +1545,122 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		}
 	}
 
+	// ===================== DIRTY REGIONS =====================
+	private static final long SCENE_COMBAT = 2;
+	private static final long SCENE_CORRIDOR = 3;
+	private static final long SCENE_EXPANSION = 4;
+	private static final long SCENE_MERCHANT = 5;
+	private static final long SCENE_TREASURE = 6;
+	private static final long SCENE_EMPTY_ROOM = 7;
+	private static final long SCENE_HEALER = 8;
+
+	/**
+	 * Tells if the screen must be drawn again even though nothing changed in
+	 * the game, for example because an image it shows was still loading. The
+	 * frames are drawn continuously while the profiler measures the frame rate.
+	 *
+	 * @return true if a frame is needed
+	 */
+	public boolean needsRedraw() {
+		return regions.isInvalid() || profiler.isEnabled();
+	}
+
+	private static long mix(long stamp, long value) {
+		return stamp * 31 + value;
+	}
+
+	/**
+	 * Describes the frame to the dirty region tracker and clips the graphics to
+	 * what changed since the previous frame. Everything else is still on screen
+	 * from the previous frame.
+	 *
+	 * @param scene stamp of what is not covered by a region (room, background,
+	 *              animation frame, enemies...)
+	 * @return false if nothing changed and the frame can be skipped
+	 */
+	private boolean beginFrame(Graphics2D g, long scene, ViewState state, boolean interactive, int width, int height) {
+		regions.begin(scene, width, height);
+
+		MapState mapState = state.map();
+		PlayerState player = state.player();
+		long map = mapState.version();
+		if (player.moving()) {
+			map = mix(map, Float.floatToIntBits(player.progress()));
+		}
+		if (player.followingPath()) {
+			map = mix(mix(map, player.path().hashCode()), player.pathIndex());
+		}
+		regions.track(Region.MAP, 0, 0, mapWidth(), mapHeight(mapState), map);
+
+		// the expansion mode shows the bag without selection, dragged or floating items
+		BackPack backpack = state.backpack();
+		DragState drag = state.drag();
+		boolean isDragging = interactive && drag.dragging();
+		Item draggedItem = interactive ? drag.item() : null;
+		long bag = mix(mix(backpack.version(), interactive ? state.selectedSlots().hashCode() : 0),
+				System.identityHashCode(draggedItem));
+		regions.track(Region.BACKPACK, backpackX(), backpackY(), backpackWidth(backpack), backpackHeight(backpack),
+				mix(bag, isDragging ? 1 : 0));
+
+		Item[][] roomGrid = state.roomGrid();
+		if (roomGrid != null) {
+			long room = mix(isDragging ? 1 : 0, System.identityHashCode(draggedItem));
+			for (Item[] row : roomGrid) {
+				for (Item item : row) {
+					room = mix(room, System.identityHashCode(item));
+				}
+			}
+			regions.track(Region.ROOM_GRID, roomGridX(width), roomGridY(height) - 45,
+					Math.max(roomGrid[0].length * (CELL_SIZE + PADDING), 400),
+					roomGrid.length * (CELL_SIZE + PADDING) + 45, room);
+		}
+
+		if (isDragging && draggedItem != null) {
+			int itemW = draggedItem.width() * (CELL_SIZE + PADDING) - PADDING;
+			int itemH = draggedItem.height() * (CELL_SIZE + PADDING) - PADDING;
+			regions.track(Region.DRAGGED_ITEM, drag.x(), drag.y(), itemW, itemH, System.identityHashCode(draggedItem));
+		}
+
+		FloatingItemIndex floatingItems = state.floatingItems();
+		if (interactive && !floatingItems.isEmpty()) {
+			Rectangle r = floatingItems.bounds(regions.scratch());
+			regions.track(Region.FLOATING_ITEMS, r.x, r.y, r.width, r.height, floatingItems.version());
+		}
+
+		HeroStats hero = state.hero();
+		long stats = mix(mix(mix(mix(hero.hp(), hero.maxHp()), hero.protection()), hero.stamina()), hero.maxStamina());
+		regions.track(Region.HERO_STATS, width - 325, 10, 300, 125, stats);
+		regions.track(Region.EXPERIENCE, 0, height - 30, width, 20, Float.floatToIntBits(hero.exp()));
+		if (profiler.isEnabled()) {
+			regions.track(Region.PROFILER, profilerX(width), profilerY(height), RenderProfiler.WIDTH,
+					RenderProfiler.HEIGHT, profiler.frames());
+		}
+
+		return regions.clip(g);
+	}
+
+	// ===================== PROFILER =====================
+	/**
+	 * Shows or hides the overlay with the time spent in each part of the frames.
+	 */
+	public void toggleProfiler() {
+		profiler.toggle();
+	}
+
+	private void drawProfiler(Graphics2D g, int width, int height) {
+		if (profiler.isEnabled()) {
+			profiler.draw(g, labels, profilerX(width), profilerY(height));
+		}
+	}
+
+	private int profilerX(int width) {
+		return width - RenderProfiler.WIDTH - 25;
+	}
+
+	private int profilerY(int height) {
+		return height - RenderProfiler.HEIGHT - 40;
+	}
+
 	// ===================== UTILITIES =====================
 	private boolean isItemTopLeft(Item[][] grid, int x, int y, Item item) {
 		if (x > 0 && grid[y][x - 1] == item)
@@ -1195,8 +1670,65 @@ public record GameView(ApplicationContext context, MapDungeon floor, BackPack ba
 		return true;
 	}
 
-	private void clearScreen(Graphics2D g) {
+	/**
+	 * Draws an image of the cache, decoding it again if it has been evicted.
+	 * Nothing is drawn while the image is being decoded, so a room entered
+	 * before its assets are ready is shown without them instead of freezing.
+	 * A snapshot drawn into an {@link OffscreenContext} is drawn only once, it
+	 * waits for the image instead. An image that cannot be loaded is reported
+	 * once and then left out.
+	 */
+	private void drawAsset(Graphics2D g, String group, String fileName, int x, int y, int w, int h) {
+		BufferedImage cached = loader.peek(group, fileName, w, h);
+		if (cached != null) {
+			drawImage(g, cached, x, y, w, h);
+			return;
+		}
+		if (missingAssets.contains(fileName)) {
+			return;
+		}
+		CompletableFuture<BufferedImage> pending = loader.load(group, fileName, w, h);
+		if (context instanceof OffscreenContext) {
+			pending.exceptionally(error -> null).join();
+		}
+		if (!pending.isDone()) {
+			pending.whenComplete((image, error) -> {
+				if (error != null) {
+					reportMissing(fileName);
+				}
+			});
+			regions.invalidate();
+			return;
+		}
+		if (pending.isCompletedExceptionally()) {
+			reportMissing(fileName);
+			return;
+		}
+		drawImage(g, AssetLoader.join(pending), x, y, w, h);
+	}
+
+	private static void reportMissing(String fileName) {
+		if (missingAssets.add(fileName)) {
+			System.out.println("Error : unable to draw " + fileName + ", it is left out");
+		}
+	}
+
+	/**
+	 * Draws an image at the given size.
+	 * Images resampled at load time already have that size and are copied as is.
+	 */
+	private void drawImage(Graphics2D g, BufferedImage img, int x, int y, int w, int h) {
+		if (img.getWidth() == w && img.getHeight() == h) {
+			g.drawImage(img, x, y, null);
+		} else {
+			g.drawImage(img, x, y, w, h, null);
+		}
+	}
+
+	private void clearScreen(Graphics2D g, int width, int height) {
+		Phase outer = profiler.enter(Phase.BACKGROUND);
 		g.setColor(Color.BLACK);
-		g.fillRect(0, 0, context.getScreenInfo().width(), context.getScreenInfo().height());
+		g.fillRect(0, 0, width, height);
+		profiler.leave(outer);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package fr.uge.graphics;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import fr.uge.assets.ImageScaler;
+import fr.uge.items.Item;
+
+/**
+ * Images of the items, resampled once to the size they are drawn at.
+ *
+ * <p>The look of an item only depends on its {@link VisualState} (its kind,
+ * its rotation and its damage tier), which is computed once per item value
+ * from its name. Each visual state is resampled once per size, and each item
+ * remembers its sprite, so drawing an item is a map lookup followed by a
+ * plain copy of the image.
+ */
+final class ItemSprites {
+
+	/**
+	 * The kinds of items that have an image.
+	 */
+	enum Kind {
+		SWORD("sword", true), BOW("bow", true), SHIELD("shield", false), AXE("hache", true), GOLD("gold", false),
+		HEAL("heal", false), RATION("ration", false);
+
+		private final String prefix;
+		private final boolean weapon;
+
+		Kind(String prefix, boolean weapon) {
+			this.prefix = prefix;
+			this.weapon = weapon;
+		}
+	}
+
+	/**
+	 * What an item looks like.
+	 *
+	 * @param kind    kind of the item
+	 * @param rotated true if the item is rotated, only for weapons
+	 * @param tier    damage tier, 0, 1 (10 damage or more) or 2 (20 or more),
+	 *                only for weapons
+	 */
+	record VisualState(Kind kind, boolean rotated, int tier) {
+		VisualState {
+			Objects.requireNonNull(kind);
+			if (tier < 0 || tier > 2)
+				throw new IllegalArgumentException("Invalid damage tier: " + tier);
+		}
+
+		/**
+		 * @return the key of the image, its file name without folder nor extension
+		 */
+		String imageKey() {
+			if (!kind.weapon) {
+				return kind.prefix;
+			}
+			return kind.prefix + (rotated ? "90" : "") + switch (tier) {
+			case 2 -> "o";
+			case 1 -> "v";
+			default -> "";
+			};
+		}
+	}
+
+	/** Image of a visual state at a size */
+	private record ScaledKey(VisualState state, int width, int height) {
+	}
+
+	/**
+	 * Last sprite drawn for an item, the image is null until it is available.
+	 * The sprite of the size before is kept too: equal items share their
+	 * sprite and are often drawn at two sizes in the same frame.
+	 */
+	private record Sprite(VisualState state, BufferedImage image, int width, int height, Sprite previous) {
+		BufferedImage imageAt(int width, int height) {
+			if (image != null && this.width == width && this.height == height) {
+				return image;
+			}
+			return previous == null ? null : previous.imageAt(width, height);
+		}
+	}
+
+	private static final Sprite NO_SPRITE = new Sprite(null, null, 0, 0, null);
+
+	private final Function<String, BufferedImage> source;
+	private final Map<ScaledKey, BufferedImage> scaled = new ConcurrentHashMap<>();
+	// Items are immutable, their sprite is resolved once per value
+	private final Map<Item, Sprite> sprites = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param source gives the decoded image of an image key, or null if there is
+	 *               none yet
+	 */
+	ItemSprites(Function<String, BufferedImage> source) {
+		this.source = Objects.requireNonNull(source);
+	}
+
+	/**
+	 * Returns the image of an item, resampled to a size.
+	 *
+	 * @param item   the item
+	 * @param width  width the item is drawn at
+	 * @param height height the item is drawn at
+	 * @return the image, or null if the item has none
+	 */
+	BufferedImage sprite(Item item, int width, int height) {
+		Sprite sprite = sprites.get(item);
+		if (sprite != null) {
+			BufferedImage image = sprite.imageAt(width, height);
+			if (image != null) {
+				return image;
+			}
+		}
+		if (sprite == null) {
+			VisualState state = visualState(item);
+			sprite = state == null ? NO_SPRITE : new Sprite(state, null, 0, 0, null);
+			sprites.put(item, sprite);
+		}
+		if (sprite.state() == null) {
+			return null;
+		}
+		BufferedImage image = scaled(sprite.state(), width, height);
+		if (image != null) {
+			// the sprite before the last one is dropped
+			Sprite last = sprite.image() == null ? null
+					: new Sprite(sprite.state(), sprite.image(), sprite.width(), sprite.height(), null);
+			sprites.put(item, new Sprite(sprite.state(), image, width, height, last));
+		}
+		return image;
+	}
+
+	private BufferedImage scaled(VisualState state, int width, int height) {
+		var key = new ScaledKey(state, width, height);
+		BufferedImage image = scaled.get(key);
+		if (image != null) {
+			return image;
+		}
+		BufferedImage original = source.apply(state.imageKey());
+		if (original == null) {
+			// not loaded yet, asked again on the next draw
+			return null;
+		}
+		return scaled.computeIfAbsent(key, k -> ImageScaler.scale(original, width, height));
+	}
+
+	/**
+	 * Finds what an item looks like from its name, its rotation and its damage.
+	 *
+	 * @param item the item
+	 * @return the visual state, or null if the item has no image
+	 */
+	static VisualState visualState(Item item) {
+		var name = item.name().toLowerCase();
+		Kind kind;
+		if (name.contains("sword") || name.contains("epee")) {
+			kind = Kind.SWORD;
+		} else if (name.contains("bow") || name.contains("arc")) {
+			kind = Kind.BOW;
+		} else if (name.contains("shield") || name.contains("bouclier")) {
+			kind = Kind.SHIELD;
+		} else if (name.contains("hachette")) {
+			kind = Kind.AXE;
+		} else if (name.contains("gold")) {
+			kind = Kind.GOLD;
+		} else if (name.contains("heal")) {
+			kind = Kind.HEAL;
+		} else if (name.contains("ration")) {
+			kind = Kind.RATION;
+		} else {
+			return null;
+		}
+		if (!kind.weapon) {
+			return new VisualState(kind, false, 0);
+		}
+		int damage = item.attackValue();
+		int tier = damage >= 20 ? 2 : damage >= 10 ? 1 : 0;
+		return new VisualState(kind, item.isRotated(), tier);
+	}
+}
@@ -0,0 +1,79 @@
+package fr.uge.graphics;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.util.Objects;
+
+/**
+ * Texts of the labels showing a number, like {@code "12 HP"} or
+ * {@code "5 $"}, kept so that a label whose number did not change is not
+ * built again on each frame.
+ * The cache has a fixed number of slots; a label goes in the slot given by
+ * its hash and replaces the label that was there.
+ * The metrics of the font the labels are measured with are kept too, asking
+ * them to a graphics allocates.
+ */
+final class LabelCache {
+
+	private static final int SLOTS = 256;
+
+	private final String[] prefixes = new String[SLOTS];
+	private final String[] suffixes = new String[SLOTS];
+	private final int[] values = new int[SLOTS];
+	private final String[] texts = new String[SLOTS];
+	private FontMetrics metrics;
+
+	/**
+	 * Returns the text of a number followed by a suffix.
+	 *
+	 * @param value  the number
+	 * @param suffix the text after the number, usually a constant
+	 * @return the label
+	 */
+	String text(int value, String suffix) {
+		return text("", value, suffix);
+	}
+
+	/**
+	 * Returns the text of a number between a prefix and a suffix. The prefix and
+	 * the suffix are compared by identity, they are meant to be constants.
+	 *
+	 * @param prefix the text before the number
+	 * @param value  the number
+	 * @param suffix the text after the number
+	 * @return the label
+	 */
+	String text(String prefix, int value, String suffix) {
+		Objects.requireNonNull(prefix);
+		Objects.requireNonNull(suffix);
+		int slot = (System.identityHashCode(prefix) * 31 + System.identityHashCode(suffix)) * 31 + value;
+		slot = (slot ^ (slot >>> 16)) & (SLOTS - 1);
+		String text = texts[slot];
+		if (text != null && values[slot] == value && prefixes[slot] == prefix && suffixes[slot] == suffix) {
+			return text;
+		}
+		text = prefix + value + suffix;
+		prefixes[slot] = prefix;
+		suffixes[slot] = suffix;
+		values[slot] = value;
+		texts[slot] = text;
+		return text;
+	}
+
+	/**
+	 * Returns the width of a text in the font of a graphics. The metrics are
+	 * asked again only when the font changes, the view never changes the
+	 * hints the text is drawn with.
+	 *
+	 * @param g    the graphics the text is drawn on
+	 * @param text the text
+	 * @return the width in pixels
+	 */
+	int width(Graphics2D g, String text) {
+		Objects.requireNonNull(text);
+		if (metrics == null || !metrics.getFont().equals(g.getFont())) {
+			metrics = g.getFontMetrics();
+		}
+		return metrics.stringWidth(text);
+	}
+}
@@ -0,0 +1,130 @@
+package fr.uge.graphics;
+
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.forax.zen.Event;
+
+/**
+ * Runs the game on its own thread, so a slow frame does not delay the
+ * handling of the events and the other way around.
+ *
+ * <p>The thread that draws forwards the events of the window with
+ * {@link #post(Event)}. The logic thread handles them with the
+ * {@link GameController}, and after each change publishes a {@link ViewState}
+ * that the drawing thread gets with {@link #latest()}. The controller and the
+ * game it controls must only be used by the logic thread once it started.
+ * If the game fails, the logic thread stops and its error is thrown again to
+ * the drawing thread by {@link #latest()} and {@link #isBusy()}.
+ */
+final class LogicLoop {
+
+	/** Longest wait for an event when nothing moves, in milliseconds */
+	private static final int IDLE_TIMEOUT = 1000;
+
+	private final GameController controller;
+	private final int tickMillis;
+	private final LinkedBlockingQueue<Event> events = new LinkedBlockingQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile ViewState latest;
+	private volatile Throwable failure;
+
+	/**
+	 * Creates a loop and takes the first state of the game.
+	 *
+	 * @param controller the controller of the game
+	 * @param tickMillis time between two updates while something moves, in
+	 *                   milliseconds
+	 */
+	LogicLoop(GameController controller, int tickMillis) {
+		if (tickMillis <= 0)
+			throw new IllegalArgumentException("Invalid tick: " + tickMillis);
+		this.controller = Objects.requireNonNull(controller);
+		this.tickMillis = tickMillis;
+		this.latest = ViewState.capture(controller, null);
+	}
+
+	/**
+	 * Starts the logic thread.
+	 */
+	void start() {
+		Thread thread = new Thread(this::run, "game-logic");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Sends an event to the logic thread.
+	 *
+	 * @param event the event
+	 */
+	void post(Event event) {
+		Objects.requireNonNull(event);
+		pending.incrementAndGet();
+		events.add(event);
+	}
+
+	/**
+	 * @return true if events were sent and their state is not published yet
+	 * @throws IllegalStateException if the logic thread failed, with its error
+	 *                               as cause
+	 */
+	boolean isBusy() {
+		checkRunning();
+		return pending.get() > 0;
+	}
+
+	/**
+	 * @return the last state published by the logic thread
+	 * @throws IllegalStateException if the logic thread failed, with its error
+	 *                               as cause
+	 */
+	ViewState latest() {
+		checkRunning();
+		return latest;
+	}
+
+	private void checkRunning() {
+		Throwable failure = this.failure;
+		if (failure != null) {
+			throw new IllegalStateException("The game logic stopped", failure);
+		}
+	}
+
+	private void run() {
+		try {
+			loop();
+		} catch (Throwable e) {
+			// no state will come anymore, the drawing thread gets the error instead
+			failure = e;
+		}
+	}
+
+	private void loop() {
+		boolean animating = latest.animating();
+		for (;;) {
+			Event event;
+			try {
+				event = events.poll(animating ? tickMillis : IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			controller.updatePlayerAnimation();
+			int handled = 0;
+			// the events that came during the update are handled before publishing
+			for (; event != null; event = events.poll()) {
+				controller.handle(event);
+				handled++;
+			}
+			if (handled == 0 && !animating) {
+				continue;
+			}
+			ViewState state = ViewState.capture(controller, latest);
+			latest = state;
+			animating = state.animating();
+			pending.addAndGet(-handled);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package fr.uge.graphics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.github.forax.zen.ApplicationContext;
+import com.github.forax.zen.Event;
+import com.github.forax.zen.ScreenInfo;
+
+/**
+ * Application context drawing into an image instead of a window, so the
+ * displays of {@link GameView} can run without a screen.
+ * It has no event and can be used from any thread, one thread at a time.
+ * A {@link GameView} drawing into it waits for the images it draws instead
+ * of skipping them while they load.
+ */
+public final class OffscreenContext implements ApplicationContext {
+
+	private final BufferedImage image;
+
+	/**
+	 * Creates a context with a black image.
+	 *
+	 * @param width  width of the image
+	 * @param height height of the image
+	 */
+	public OffscreenContext(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, width, height);
+		} finally {
+			g.dispose();
+		}
+	}
+
+	/**
+	 * @return the image drawn so far
+	 */
+	public BufferedImage image() {
+		return image;
+	}
+
+	/**
+	 * Returns a new screen info on each call, as the context of a window does,
+	 * so that a view draws here as it does on screen.
+	 */
+	@Override
+	public ScreenInfo getScreenInfo() {
+		return new ScreenInfo(image.getWidth(), image.getHeight());
+	}
+
+	@Override
+	public void dispose() {
+		// nothing to release, the image belongs to the caller
+	}
+
+	@Override
+	public Event pollEvent() {
+		return null;
+	}
+
+	@Override
+	public Event pollOrWaitEvent(long timeout) {
+		return null;
+	}
+
+	@Override
+	public void renderFrame(Consumer<Graphics2D> renderer) {
+		Objects.requireNonNull(renderer);
+		Graphics2D g = image.createGraphics();
+		try {
+			renderer.accept(g);
+		} finally {
+			g.dispose();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package fr.uge.graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Offscreen images of the parts of the screen that rarely change, like the
+ * cells of the map or of the backpack. A layer is painted once and then
+ * copied on each frame, until the key describing its content changes.
+ *
+ * <p>Usage :
+ * <pre>
+ * Graphics2D lg = layers.begin(g, Layer.MAP, x, y, w, h, key);
+ * if (lg != null) {
+ *   // paint the layer with lg, in screen coordinates
+ *   layers.end(lg);
+ * }
+ * layers.draw(g, Layer.MAP);
+ * </pre>
+ */
+final class RenderLayers {
+
+	/**
+	 * The cached layers.
+	 */
+	enum Layer {
+		MAP, BACKPACK
+	}
+
+	private static final int LAYERS = Layer.values().length;
+
+	private final BufferedImage[] images = new BufferedImage[LAYERS];
+	private final int[] xs = new int[LAYERS];
+	private final int[] ys = new int[LAYERS];
+	private final long[] keys = new long[LAYERS];
+	private final boolean[] valid = new boolean[LAYERS];
+
+	/**
+	 * Prepares a layer to be drawn.
+	 *
+	 * @param g     the graphics of the frame, whose settings are copied
+	 * @param layer the layer
+	 * @param x     left of the layer on the screen
+	 * @param y     top of the layer on the screen
+	 * @param w     width of the layer
+	 * @param h     height of the layer
+	 * @param key   summary of the content of the layer
+	 * @return a graphics to paint the layer with, in screen coordinates, or
+	 *         null if the layer is up to date
+	 */
+	Graphics2D begin(Graphics2D g, Layer layer, int x, int y, int w, int h, long key) {
+		if (w <= 0 || h <= 0) {
+			throw new IllegalArgumentException("Invalid layer size " + w + "x" + h);
+		}
+		int i = layer.ordinal();
+		BufferedImage image = images[i];
+		if (image == null || image.getWidth() != w || image.getHeight() != h) {
+			image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+			images[i] = image;
+			valid[i] = false;
+		}
+		if (valid[i] && keys[i] == key && xs[i] == x && ys[i] == y) {
+			return null;
+		}
+		xs[i] = x;
+		ys[i] = y;
+		keys[i] = key;
+		valid[i] = true;
+
+		Graphics2D lg = image.createGraphics();
+		lg.setComposite(AlphaComposite.Clear);
+		lg.fillRect(0, 0, w, h);
+		lg.setComposite(AlphaComposite.SrcOver);
+		lg.setRenderingHints(g.getRenderingHints());
+		lg.setFont(g.getFont());
+		lg.translate(-x, -y);
+		return lg;
+	}
+
+	/**
+	 * Ends the painting of a layer.
+	 *
+	 * @param lg the graphics returned by {@link #begin}
+	 */
+	void end(Graphics2D lg) {
+		lg.dispose();
+	}
+
+	/**
+	 * Forces a layer to be painted again the next time it is drawn.
+	 *
+	 * @param layer the layer
+	 */
+	void invalidate(Layer layer) {
+		valid[layer.ordinal()] = false;
+	}
+
+	/**
+	 * Copies a layer on the frame.
+	 *
+	 * @param g     the graphics of the frame
+	 * @param layer the layer, prepared by {@link #begin}
+	 */
+	void draw(Graphics2D g, Layer layer) {
+		int i = layer.ordinal();
+		if (images[i] == null) {
+			throw new IllegalStateException("Layer " + layer + " was never painted");
+		}
+		g.drawImage(images[i], xs[i], ys[i], null);
+	}
+}
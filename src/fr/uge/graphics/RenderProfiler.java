@@ -0,0 +1,253 @@
+package fr.uge.graphics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures where the time of a frame goes, to find the drawing methods that
+ * are too slow. It does nothing until it is enabled, then each frame is
+ * split between the {@link Phase phases} of the drawing, and the overlay
+ * shows the time of each phase, the 1% low frame rate and the memory
+ * allocated per frame. The frame rate comes from the time between the starts
+ * of two frames, it includes what happens between the drawings.
+ *
+ * <p>A drawing method reports its phase with {@link #enter(Phase)} and
+ * {@link #leave(Phase)}. The phases can be nested, the time of the inner
+ * phase is not counted in the outer one. The time spent outside of the
+ * phases, like copying the frame to the window, is shown as "other".
+ * The profiler must be used by the thread that draws.
+ */
+final class RenderProfiler {
+
+	/**
+	 * The parts of a frame.
+	 */
+	enum Phase {
+		BACKGROUND("Background"), GRID("Grid"), BACKPACK("Backpack"), ITEMS("Items"), BARS("Bars"),
+		ANIMATIONS("Animations");
+
+		private final String label;
+
+		Phase(String label) {
+			this.label = label;
+		}
+	}
+
+	/** The phases, values() builds a new array on each call */
+	private static final Phase[] PHASES = Phase.values();
+
+	/** Number of intervals between frames of the rolling window of the 1% low */
+	private static final int WINDOW = 1000;
+	/** Weight of the last frame in the averages shown */
+	private static final double SMOOTHING = 0.1;
+
+	static final int WIDTH = 300;
+	static final int HEIGHT = 20 * (PHASES.length + 5) + 10;
+
+	private static final Color BACKGROUND_COLOR = new Color(0, 0, 0, 200);
+	private static final Color BAR_COLOR = new Color(255, 140, 0);
+
+	private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+	private final long[] phaseNanos = new long[PHASES.length];
+	private final double[] phaseAverages = new double[PHASES.length];
+	private final long[] window = new long[WINDOW];
+	private final long[] sorted = new long[WINDOW];
+	private boolean enabled;
+	private Phase current;
+	private long lastSwitch;
+	private long frameStart;
+	private long previousFrameStart;
+	private long intervals;
+	private long frameAllocStart;
+	private long frames;
+	private double frameAverage;
+	private double otherAverage;
+	private double allocAverage;
+	private long onePercentLow;
+
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+				&& bean.isThreadAllocatedMemorySupported()) {
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return bean;
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the frames are measured and the overlay is shown
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Shows or hides the overlay. The measures start again from zero.
+	 */
+	void toggle() {
+		enabled = !enabled;
+		frames = intervals = 0;
+		previousFrameStart = 0;
+		frameAverage = otherAverage = allocAverage = 0;
+		onePercentLow = 0;
+		Arrays.fill(phaseAverages, 0);
+	}
+
+	/**
+	 * @return the number of frames measured, it changes on each frame
+	 */
+	long frames() {
+		return frames;
+	}
+
+	/**
+	 * Starts measuring a frame.
+	 */
+	void beginFrame() {
+		if (!enabled) {
+			return;
+		}
+		Arrays.fill(phaseNanos, 0);
+		current = null;
+		frameAllocStart = allocatedBytes();
+		long now = System.nanoTime();
+		if (previousFrameStart != 0) {
+			window[(int) (intervals % WINDOW)] = now - previousFrameStart;
+			intervals++;
+			// the window is sorted again only from time to time
+			if (intervals % 60 == 1) {
+				onePercentLow = onePercentLow();
+			}
+		}
+		previousFrameStart = now;
+		frameStart = lastSwitch = now;
+	}
+
+	/**
+	 * Ends the frame started by {@link #beginFrame()} and adds it to the
+	 * averages.
+	 */
+	void endFrame() {
+		if (!enabled) {
+			return;
+		}
+		long now = System.nanoTime();
+		long total = now - frameStart;
+		long phases = 0;
+		for (int i = 0; i < phaseNanos.length; i++) {
+			phases += phaseNanos[i];
+			phaseAverages[i] = smooth(phaseAverages[i], phaseNanos[i]);
+		}
+		frameAverage = smooth(frameAverage, total);
+		otherAverage = smooth(otherAverage, total - phases);
+		long alloc = allocatedBytes();
+		if (alloc >= 0) {
+			allocAverage = smooth(allocAverage, alloc - frameAllocStart);
+		}
+		frames++;
+	}
+
+	private double smooth(double average, double value) {
+		return frames == 0 ? value : average + (value - average) * SMOOTHING;
+	}
+
+	/**
+	 * Frame rate of the slowest 1% of the intervals between frames of the
+	 * window.
+	 */
+	private long onePercentLow() {
+		int count = (int) Math.min(intervals, WINDOW);
+		System.arraycopy(window, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		int slowest = Math.max(1, count / 100);
+		long sum = 0;
+		for (int i = count - slowest; i < count; i++) {
+			sum += sorted[i];
+		}
+		long average = sum / slowest;
+		return average == 0 ? 0 : 1_000_000_000L / average;
+	}
+
+	private static long allocatedBytes() {
+		return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Starts a phase of the frame.
+	 *
+	 * @param phase the phase
+	 * @return the phase that was measured before, to give to {@link #leave}
+	 */
+	Phase enter(Phase phase) {
+		if (!enabled) {
+			return null;
+		}
+		Phase previous = current;
+		switchTo(phase);
+		return previous;
+	}
+
+	/**
+	 * Ends the phase started by {@link #enter(Phase)}.
+	 *
+	 * @param previous the phase returned by {@link #enter(Phase)}
+	 */
+	void leave(Phase previous) {
+		if (!enabled) {
+			return;
+		}
+		switchTo(previous);
+	}
+
+	private void switchTo(Phase phase) {
+		long now = System.nanoTime();
+		if (current != null) {
+			phaseNanos[current.ordinal()] += now - lastSwitch;
+		}
+		lastSwitch = now;
+		current = phase;
+	}
+
+	/**
+	 * Draws the overlay with the measures of the previous frames.
+	 *
+	 * @param g      the graphics
+	 * @param labels the texts of the labels
+	 * @param x      left of the overlay
+	 * @param y      top of the overlay
+	 */
+	void draw(Graphics2D g, LabelCache labels, int x, int y) {
+		g.setColor(BACKGROUND_COLOR);
+		g.fillRect(x, y, WIDTH, HEIGHT);
+		g.setColor(Color.WHITE);
+		int line = y + 20;
+		g.drawString(labels.text("Frame : ", micros(frameAverage), " µs"), x + 10, line);
+		line += 20;
+		g.drawString(labels.text("1% low : ", (int) onePercentLow, " FPS"), x + 10, line);
+		line += 20;
+		g.drawString(threads == null ? "Alloc : n/a" : labels.text("Alloc : ", (int) allocAverage, " B / frame"), x + 10,
+				line);
+		line += 20;
+		for (Phase phase : PHASES) {
+			drawPhase(g, labels, phase.label, phaseAverages[phase.ordinal()], x, line);
+			line += 20;
+		}
+		drawPhase(g, labels, "Other", otherAverage, x, line);
+	}
+
+	private void drawPhase(Graphics2D g, LabelCache labels, String label, double nanos, int x, int y) {
+		int barWidth = frameAverage <= 0 ? 0 : (int) (100 * Math.max(0, nanos) / frameAverage);
+		g.setColor(BAR_COLOR);
+		g.fillRect(x + 190, y - 11, barWidth, 12);
+		g.setColor(Color.WHITE);
+		g.drawString(label, x + 10, y);
+		g.drawString(labels.text(micros(nanos), " µs"), x + 100, y);
+	}
+
+	private static int micros(double nanos) {
+		return (int) Math.round(nanos / 1000);
+	}
+}
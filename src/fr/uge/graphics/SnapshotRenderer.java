@@ -0,0 +1,223 @@
+package fr.uge.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.github.forax.zen.ApplicationContext;
+
+import fr.uge.backpack.BackPack;
+import fr.uge.backpack.BackpackExpansionSystem;
+import fr.uge.combat.Battle;
+import fr.uge.enemy.Hero;
+import fr.uge.graphics.ViewState.Screen;
+import fr.uge.items.Gold;
+import fr.uge.items.HealingItem;
+import fr.uge.items.ItemType;
+import fr.uge.items.Sword;
+import fr.uge.map.Dungeon;
+import fr.uge.map.MapDungeon;
+import fr.uge.room.HealerRoom;
+import fr.uge.room.Merchant;
+import fr.uge.room.TreasureChest;
+
+/**
+ * Draws game states into images without a window, with the same displays as
+ * the game, to produce thumbnails and regression screenshots.
+ * Each state is drawn by a worker thread into its own {@link OffscreenContext}
+ * and its own {@link GameView}; the decoded images are shared by all the
+ * workers.
+ */
+public final class SnapshotRenderer implements AutoCloseable {
+
+	/**
+	 * A game state to draw.
+	 */
+	@FunctionalInterface
+	public interface Scene {
+		/**
+		 * Builds the state and draws it with a display of a {@link GameView}
+		 * created on the context.
+		 *
+		 * @param context the context to draw into
+		 */
+		void draw(OffscreenContext context);
+	}
+
+	private static final int[][] STARTING_CELLS = { { 1, 2 }, { 1, 3 }, { 1, 4 }, { 2, 2 }, { 2, 3 }, { 2, 4 },
+			{ 3, 2 }, { 3, 3 }, { 3, 4 } };
+
+	private final int width;
+	private final int height;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a renderer and loads the images of the items.
+	 *
+	 * @param width   width of the snapshots
+	 * @param height  height of the snapshots
+	 * @param threads number of states drawn at the same time
+	 */
+	public SnapshotRenderer(int width, int height, int threads) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+		if (threads <= 0)
+			throw new IllegalArgumentException("Invalid thread count: " + threads);
+		this.width = width;
+		this.height = height;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "snapshot-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		GameView.loadItemAssets();
+	}
+
+	/**
+	 * Draws a state on a worker thread.
+	 *
+	 * @param scene the state
+	 * @return the pending snapshot
+	 */
+	public CompletableFuture<BufferedImage> submit(Scene scene) {
+		Objects.requireNonNull(scene);
+		return CompletableFuture.supplyAsync(() -> {
+			var context = new OffscreenContext(width, height);
+			scene.draw(context);
+			return context.image();
+		}, executor);
+	}
+
+	/**
+	 * Draws several states in parallel and waits for them.
+	 *
+	 * @param scenes the states
+	 * @return the snapshots, in the same order as the states
+	 */
+	public List<BufferedImage> renderAll(List<? extends Scene> scenes) {
+		List<CompletableFuture<BufferedImage>> pending = new ArrayList<>(scenes.size());
+		for (Scene scene : scenes) {
+			pending.add(submit(scene));
+		}
+		return pending.stream().map(CompletableFuture::join).toList();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	// ===================== SAMPLE STATES =====================
+	/**
+	 * A sample game and the display it is drawn with.
+	 *
+	 * @param controller the controller of the game
+	 * @param screen     the display
+	 */
+	record Sample(GameController controller, Screen screen) {
+	}
+
+	/**
+	 * Builds a sample game, a fight, a merchant or a treasure depending on its
+	 * index. The dungeon and the enemies only depend on the index.
+	 *
+	 * @param context the context the game is drawn into
+	 * @param view    the view of the game
+	 * @param index   index of the sample
+	 * @return the game and its display
+	 */
+	static Sample sample(ApplicationContext context, GameView view, int index) {
+		var random = new Random(index);
+		Dungeon dungeon = new Dungeon(random);
+		MapDungeon floor = dungeon.getFloor(0);
+
+		BackPack backpack = new BackPack(5, 7);
+		backpack.unlockCells(STARTING_CELLS);
+		backpack.place(new Sword(ItemType.SWORD, 5 + random.nextInt(16), 1, 1, 2, 5), 2, 2);
+		backpack.place(new HealingItem("Heal", 10, 1, 1), 3, 2);
+		backpack.autoAdd(new Gold("Gold", 1 + random.nextInt(50)));
+
+		var hero = new Hero(40, 0, 3, 0, backpack);
+		var fight = new Battle(hero, backpack, random);
+		var treasureChest = new TreasureChest(3, 5);
+		var merchant = new Merchant(3, 5);
+		var controller = new GameController(context, view, floor, backpack, fight, dungeon, hero, treasureChest,
+				merchant, new BackpackExpansionSystem(backpack), new HealerRoom());
+
+		return switch (index % 3) {
+		case 0 -> {
+			fight.initEnemies();
+			yield new Sample(controller, Screen.COMBAT);
+		}
+		case 1 -> new Sample(controller, Screen.MERCHANT);
+		default -> {
+			treasureChest.generateTreasure();
+			yield new Sample(controller, Screen.TREASURE);
+		}
+		};
+	}
+
+	/**
+	 * Draws a sample state, a fight, a merchant or a treasure depending on its
+	 * index. The dungeon and the enemies only depend on the index.
+	 *
+	 * @param context the context to draw into
+	 * @param index   index of the state
+	 */
+	public static void drawSample(OffscreenContext context, int index) {
+		var view = new GameView(context);
+		Sample sample = sample(context, view, index);
+		view.display(ViewState.capture(sample.controller(), sample.screen(), null));
+	}
+
+	/**
+	 * Writes sample snapshots as PNG files.
+	 *
+	 * @param args the output folder, the number of snapshots, and optionally the
+	 *             width, the height and the number of threads
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage : SnapshotRenderer <output folder> <count> [width height [threads]]");
+			return;
+		}
+		Path output = Path.of(args[0]);
+		int count = Integer.parseInt(args[1]);
+		int width = args.length > 3 ? Integer.parseInt(args[2]) : 1920;
+		int height = args.length > 3 ? Integer.parseInt(args[3]) : 1080;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		Files.createDirectories(output);
+
+		long start = System.nanoTime();
+		try (var renderer = new SnapshotRenderer(width, height, threads)) {
+			List<CompletableFuture<Void>> written = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int index = i;
+				written.add(renderer.submit(context -> drawSample(context, index)).thenAccept(image -> {
+					try {
+						ImageIO.write(image, "png", output.resolve(String.format("snapshot-%05d.png", index)).toFile());
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}));
+			}
+			CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)).join();
+		}
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		System.out.println(count + " snapshots written to " + output + " in " + millis + " ms with " + threads
+				+ " threads");
+	}
+}
@@ -0,0 +1,291 @@
+package fr.uge.graphics;
+
+import java.util.List;
+import java.util.Objects;
+
+import fr.uge.backpack.BackPack;
+import fr.uge.backpack.BackpackExpansionSystem;
+import fr.uge.combat.Battle;
+import fr.uge.combat.Battle.EnemyAction;
+import fr.uge.enemy.Enemy;
+import fr.uge.enemy.Hero;
+import fr.uge.items.FloatingItemIndex;
+import fr.uge.items.Item;
+import fr.uge.map.MapDungeon;
+import fr.uge.room.HealerRoom;
+import fr.uge.room.Room;
+
+/**
+ * Copy of everything the screen shows, taken after each update of the game
+ * and drawn by {@link GameView}. The game can change while a state is drawn
+ * on another thread, the state does not follow the changes.
+ * The arrays and the bag of a state are never modified.
+ *
+ * @param screen           the display to draw
+ * @param backpack         copy of the bag of the hero
+ * @param map              the rooms of the floor
+ * @param player           the position of the player on the map
+ * @param hero             the statistics of the hero
+ * @param combat           the fight, null outside of a fight
+ * @param selectedSlots    the selected cells of the bag
+ * @param roomGrid         the grid of the chest or of the merchant, null elsewhere
+ * @param drag             the item moved with the mouse
+ * @param floatingItems    copy of the items lying outside of the bag
+ * @param expansion        the cells that can be unlocked, null outside of the
+ *                         expansion mode
+ * @param healer           the healer, null outside of the healer room
+ * @param lastChangeRoom   time of the last room change, in milliseconds
+ * @param previousRoomType type of the room the player comes from
+ * @param animating        true if something moves on screen without any event
+ */
+record ViewState(Screen screen, BackPack backpack, MapState map, PlayerState player, HeroStats hero,
+		CombatState combat, List<Integer> selectedSlots, Item[][] roomGrid, DragState drag,
+		FloatingItemIndex floatingItems, ExpansionState expansion, HealerState healer, long lastChangeRoom,
+		Room.Type previousRoomType, boolean animating) {
+
+	/**
+	 * The displays of the game.
+	 */
+	enum Screen {
+		EXPANSION, COMBAT, CORRIDOR, TREASURE, MERCHANT, HEALER, EMPTY_ROOM
+	}
+
+	/**
+	 * The rooms of a floor.
+	 *
+	 * @param rooms          the rooms
+	 * @param playerIndex    the room of the player
+	 * @param adjacentRooms  the rooms next to the player
+	 * @param accessible     for each room, true if the player can reach it
+	 * @param version        version of the floor
+	 */
+	record MapState(List<Room> rooms, int playerIndex, List<Integer> adjacentRooms, boolean[] accessible,
+			int version) {
+		MapState {
+			rooms = List.copyOf(rooms);
+			adjacentRooms = List.copyOf(adjacentRooms);
+			Objects.requireNonNull(accessible);
+		}
+
+		private static MapState of(MapDungeon floor) {
+			var accessible = new boolean[floor.rooms().size()];
+			for (int i = 0; i < accessible.length; i++) {
+				accessible[i] = floor.isRoomAccessible(i);
+			}
+			return new MapState(floor.rooms(), floor.playerIndex(), floor.adjacentRooms(), accessible, floor.version());
+		}
+	}
+
+	/**
+	 * The player on the map.
+	 *
+	 * @param moving        true while the player goes from a room to another
+	 * @param progress      progress of the move, from 0 to 1
+	 * @param startIndex    room the player leaves
+	 * @param targetIndex   room the player goes to
+	 * @param followingPath true if the player follows a path
+	 * @param path          the rooms of the path
+	 * @param pathIndex     position of the player in the path
+	 */
+	record PlayerState(boolean moving, float progress, int startIndex, int targetIndex, boolean followingPath,
+			List<Integer> path, int pathIndex) {
+		PlayerState {
+			path = List.copyOf(path);
+		}
+	}
+
+	/**
+	 * The statistics of the hero shown in the bars.
+	 *
+	 * @param hp            health points
+	 * @param maxHp         maximum health points
+	 * @param protection    protection
+	 * @param stamina       stamina left
+	 * @param maxStamina    maximum stamina
+	 * @param exp           experience
+	 * @param level         level reached with the experience
+	 * @param levelStartExp experience at which the level starts
+	 * @param levelEndExp   experience at which the level ends
+	 */
+	record HeroStats(int hp, int maxHp, int protection, int stamina, int maxStamina, float exp, int level,
+			float levelStartExp, float levelEndExp) {
+
+		private static HeroStats of(Hero hero) {
+			int level = hero.lvl(hero.exp());
+			float end = level >= 5 ? hero.maxExp() : hero.getXpForLevel(level + 1);
+			return new HeroStats(hero.hp(), hero.HeroMaxHp(), hero.protection(), hero.currentStamina(),
+					hero.maxStamina(), hero.exp(), level, hero.getXpForLevel(level), end);
+		}
+	}
+
+	/**
+	 * A fight.
+	 *
+	 * @param nbEnemies      number of enemies
+	 * @param status         banner shown, 0 to choose, 1 to attack, 2 to defend
+	 * @param enemies        the enemies
+	 * @param actions        what each enemy will do
+	 * @param lastAttackTime time of the last attack, in milliseconds
+	 */
+	record CombatState(int nbEnemies, int status, List<Enemy> enemies, List<EnemyAction> actions,
+			long lastAttackTime) {
+		CombatState {
+			enemies = List.copyOf(enemies);
+			actions = List.copyOf(actions);
+		}
+	}
+
+	/**
+	 * The item moved with the mouse.
+	 *
+	 * @param dragging true if an item is moved
+	 * @param item     the item, may be null
+	 * @param x        left of the item
+	 * @param y        top of the item
+	 */
+	record DragState(boolean dragging, Item item, int x, int y) {
+	}
+
+	/**
+	 * The expansion of the bag.
+	 *
+	 * @param pendingUnlocks number of cells left to unlock
+	 * @param available      for each cell of the bag, true if it can be unlocked
+	 */
+	record ExpansionState(int pendingUnlocks, boolean[][] available) {
+		ExpansionState {
+			Objects.requireNonNull(available);
+		}
+
+		private static ExpansionState of(BackpackExpansionSystem expansion, BackPack backpack) {
+			var available = new boolean[backpack.height()][backpack.width()];
+			for (int y = 0; y < backpack.height(); y++) {
+				for (int x = 0; x < backpack.width(); x++) {
+					available[y][x] = expansion.isExpansionAvailable(x, y);
+				}
+			}
+			return new ExpansionState(expansion.getPendingUnlocks(), available);
+		}
+	}
+
+	/**
+	 * The healer.
+	 *
+	 * @param canHeal    true if the hero can be healed now
+	 * @param enoughGold true if the hero can pay the healing
+	 * @param cost       price of the healing
+	 * @param amount     health points given by the healing
+	 */
+	record HealerState(boolean canHeal, boolean enoughGold, int cost, int amount) {
+		private static HealerState of(HealerRoom healer, Hero hero) {
+			return new HealerState(healer.canHeal(hero), hero.hasEnoughGold(healer.getHealCost()),
+					healer.getHealCost(), healer.getHealAmount());
+		}
+	}
+
+	ViewState {
+		Objects.requireNonNull(screen);
+		Objects.requireNonNull(backpack);
+		Objects.requireNonNull(map);
+		Objects.requireNonNull(player);
+		Objects.requireNonNull(hero);
+		selectedSlots = List.copyOf(selectedSlots);
+		Objects.requireNonNull(drag);
+		Objects.requireNonNull(floatingItems);
+		Objects.requireNonNull(previousRoomType);
+	}
+
+	/**
+	 * Takes the state of the display the controller is in.
+	 *
+	 * @param controller the controller of the game
+	 * @param previous   the previous state, whose copies are kept when they did
+	 *                   not change, or null
+	 * @return the state
+	 */
+	static ViewState capture(GameController controller, ViewState previous) {
+		return capture(controller, screenOf(controller), previous);
+	}
+
+	/**
+	 * Takes the state of a display of the game.
+	 *
+	 * @param controller the controller of the game
+	 * @param screen     the display
+	 * @param previous   the previous state, whose copies are kept when they did
+	 *                   not change, or null
+	 * @return the state
+	 */
+	static ViewState capture(GameController controller, Screen screen, ViewState previous) {
+		Objects.requireNonNull(screen);
+		Hero hero = controller.getHero();
+		BackPack backpack = hero.getBackpack();
+		MapDungeon floor = controller.getFloor();
+		FloatingItemIndex floating = controller.getFloatingItems();
+
+		// the bag, the map and the floating items are copied only when they change
+		BackPack bag = previous != null && previous.backpack.version() == backpack.version() ? previous.backpack
+				: backpack.copy();
+		MapState map = previous != null && previous.map.version() == floor.version() ? previous.map
+				: MapState.of(floor);
+		FloatingItemIndex floatingItems = previous != null && previous.floatingItems.version() == floating.version()
+				? previous.floatingItems
+				: floating.copy();
+
+		var player = new PlayerState(controller.isPlayerMoving(), controller.getPlayerAnimationProgress(),
+				controller.getPlayerStartIndex(), controller.getPlayerTargetIndex(), controller.isFollowingPath(),
+				controller.getCurrentPath(), controller.getPathIndex());
+		var drag = new DragState(controller.isDragging(), controller.getDraggedItem(), controller.getDragOffsetX(),
+				controller.getDragOffsetY());
+
+		CombatState combat = null;
+		if (screen == Screen.COMBAT) {
+			Battle fight = controller.getBattle();
+			combat = new CombatState(fight.nbEnemy(), 0, fight.getEnemy(), fight.getEnemyActions(),
+					controller.getLastAttackTime());
+		}
+		Item[][] roomGrid = switch (screen) {
+		case TREASURE -> copyOf(controller.getTreasureGrid());
+		case MERCHANT -> copyOf(controller.getMerchantGrid());
+		default -> null;
+		};
+		ExpansionState expansion = screen == Screen.EXPANSION
+				? ExpansionState.of(controller.getExpansionSystem(), backpack)
+				: null;
+		HealerState healer = screen == Screen.HEALER ? HealerState.of(controller.getHealerRoom(), hero) : null;
+
+		return new ViewState(screen, bag, map, player, HeroStats.of(hero), combat, controller.getSelectedSlots(),
+				roomGrid, drag, floatingItems, expansion, healer, controller.getLastChangeRoom(),
+				controller.getPreviousRoomType(), controller.isAnimating());
+	}
+
+	private static Screen screenOf(GameController controller) {
+		if (controller.isInExpansionMode()) {
+			return Screen.EXPANSION;
+		}
+		if (controller.isInCombat()) {
+			return Screen.COMBAT;
+		}
+		if (controller.isInCorridor()) {
+			return Screen.CORRIDOR;
+		}
+		if (controller.isInTreasure()) {
+			return Screen.TREASURE;
+		}
+		if (controller.isInMerchant()) {
+			return Screen.MERCHANT;
+		}
+		if (controller.isInHealer()) {
+			return Screen.HEALER;
+		}
+		return Screen.EMPTY_ROOM;
+	}
+
+	private static Item[][] copyOf(Item[][] grid) {
+		var copy = new Item[grid.length][];
+		for (int y = 0; y < grid.length; y++) {
+			copy[y] = grid[y].clone();
+		}
+		return copy;
+	}
+}
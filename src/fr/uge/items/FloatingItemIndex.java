@@ -0,0 +1,317 @@
+package fr.uge.items;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The items floating on screen, indexed by position.
+ * The screen is cut in square buckets and each item is registered in the
+ * buckets its bounds overlap, so finding the item under the pointer or the
+ * items to draw in a region only looks at the items nearby instead of all of
+ * them. The items keep the order they were added in, and are only changed
+ * through {@link #add}, {@link #remove}, {@link #removeIf} and
+ * {@link #clear}. The position of a floating item must not change while it
+ * is in the index.
+ */
+public final class FloatingItemIndex {
+
+	private static final int BUCKET_SIZE = 128;
+
+	private static final class Entry {
+		private final FloatingItem item;
+		private final Rectangle bounds;
+		private final long sequence;
+		private int mark;
+
+		private Entry(FloatingItem item, Rectangle bounds, long sequence) {
+			this.item = item;
+			this.bounds = bounds;
+			this.sequence = sequence;
+		}
+	}
+
+	private final int cellSize;
+	private final int padding;
+	private final ArrayList<Entry> entries = new ArrayList<>();
+	private final HashMap<Long, ArrayList<Entry>> buckets = new HashMap<>();
+	private final ArrayList<Entry> found = new ArrayList<>();
+	private final Rectangle bounds = new Rectangle();
+	private long sequence;
+	private int mark;
+	private int version;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param cellSize size of a cell of an item, in pixels
+	 * @param padding  space between two cells of an item, in pixels
+	 */
+	public FloatingItemIndex(int cellSize, int padding) {
+		if (cellSize <= 0 || padding < 0)
+			throw new IllegalArgumentException("Invalid cell size " + cellSize + " or padding " + padding);
+		this.cellSize = cellSize;
+		this.padding = padding;
+	}
+
+	/**
+	 * @return the number of floating items
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return true if no item floats
+	 */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Tells if an item floats, the items are compared by identity.
+	 *
+	 * @param item the item
+	 * @return true if a floating item holds it
+	 */
+	public boolean contains(Item item) {
+		for (Entry entry : entries) {
+			if (entry.item.item == item) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a floating item after the others.
+	 *
+	 * @param item the floating item
+	 */
+	public void add(FloatingItem item) {
+		Objects.requireNonNull(item);
+		Rectangle itemBounds = new Rectangle(item.position.x, item.position.y,
+				item.item().width() * (cellSize + padding) - padding, item.item().height() * (cellSize + padding) - padding);
+		Entry entry = new Entry(item, itemBounds, sequence++);
+		entries.add(entry);
+		forEachBucket(itemBounds, key -> buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(entry));
+		version++;
+		computeBounds();
+	}
+
+	/**
+	 * Removes a floating item, compared by identity.
+	 *
+	 * @param item the floating item
+	 * @return true if it was in the index
+	 */
+	public boolean remove(FloatingItem item) {
+		for (int i = 0; i < entries.size(); i++) {
+			if (entries.get(i).item == item) {
+				unindex(entries.remove(i));
+				version++;
+				computeBounds();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the floating items that match a predicate.
+	 *
+	 * @param filter the predicate
+	 * @return true if an item was removed
+	 */
+	public boolean removeIf(Predicate<? super FloatingItem> filter) {
+		Objects.requireNonNull(filter);
+		boolean removed = false;
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+			Entry entry = iterator.next();
+			if (filter.test(entry.item)) {
+				iterator.remove();
+				unindex(entry);
+				removed = true;
+			}
+		}
+		if (removed) {
+			version++;
+			computeBounds();
+		}
+		return removed;
+	}
+
+	private void unindex(Entry entry) {
+		forEachBucket(entry.bounds, key -> {
+			ArrayList<Entry> bucket = buckets.get(key);
+			bucket.remove(entry);
+			if (bucket.isEmpty()) {
+				buckets.remove(key);
+			}
+		});
+	}
+
+	/**
+	 * Removes all the floating items.
+	 */
+	public void clear() {
+		if (entries.isEmpty()) {
+			return;
+		}
+		entries.clear();
+		buckets.clear();
+		version++;
+		bounds.setBounds(0, 0, 0, 0);
+	}
+
+	/**
+	 * Finds the item under a point. When items overlap, the first one of the
+	 * list is returned.
+	 *
+	 * @param x x of the point
+	 * @param y y of the point
+	 * @return the item, or null if there is none
+	 */
+	public FloatingItem itemAt(int x, int y) {
+		ArrayList<Entry> bucket = buckets.get(key(Math.floorDiv(x, BUCKET_SIZE), Math.floorDiv(y, BUCKET_SIZE)));
+		if (bucket == null) {
+			return null;
+		}
+		// a bucket keeps the order of the list, the first item hit is the one
+		for (Entry entry : bucket) {
+			Rectangle r = entry.bounds;
+			// bounds are inclusive, like the cells drawn with drawRect
+			if (x >= r.x && x <= r.x + r.width && y >= r.y && y <= r.y + r.height) {
+				return entry.item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Calls an action on the items overlapping a region, in the order of the
+	 * list.
+	 *
+	 * @param region the region
+	 * @param action the action
+	 */
+	public void forEachIn(Rectangle region, Consumer<? super FloatingItem> action) {
+		Objects.requireNonNull(region);
+		Objects.requireNonNull(action);
+		if (entries.isEmpty() || !region.intersects(bounds)) {
+			return;
+		}
+		int fromX = Math.floorDiv(region.x, BUCKET_SIZE);
+		int toX = Math.floorDiv(region.x + region.width, BUCKET_SIZE);
+		int fromY = Math.floorDiv(region.y, BUCKET_SIZE);
+		int toY = Math.floorDiv(region.y + region.height, BUCKET_SIZE);
+		if ((long) (toX - fromX + 1) * (toY - fromY + 1) > buckets.size()) {
+			// the region covers more buckets than there are used ones
+			for (Entry entry : entries) {
+				if (entry.bounds.intersects(region)) {
+					action.accept(entry.item);
+				}
+			}
+			return;
+		}
+		mark++;
+		found.clear();
+		for (int by = fromY; by <= toY; by++) {
+			for (int bx = fromX; bx <= toX; bx++) {
+				ArrayList<Entry> bucket = buckets.get(key(bx, by));
+				if (bucket == null) {
+					continue;
+				}
+				for (Entry entry : bucket) {
+					if (entry.mark != mark && entry.bounds.intersects(region)) {
+						entry.mark = mark;
+						found.add(entry);
+					}
+				}
+			}
+		}
+		// few items overlap a region, an insertion sort restores the list order
+		for (int i = 1; i < found.size(); i++) {
+			Entry entry = found.get(i);
+			int j = i;
+			while (j > 0 && found.get(j - 1).sequence > entry.sequence) {
+				found.set(j, found.get(j - 1));
+				j--;
+			}
+			found.set(j, entry);
+		}
+		for (Entry entry : found) {
+			action.accept(entry.item);
+		}
+	}
+
+	/**
+	 * Returns a copy of the list with the same items and version. The copy does
+	 * not follow the later changes of the list.
+	 *
+	 * @return the copy
+	 */
+	public FloatingItemIndex copy() {
+		var copy = new FloatingItemIndex(cellSize, padding);
+		for (Entry entry : entries) {
+			copy.add(entry.item);
+		}
+		copy.version = version;
+		return copy;
+	}
+
+	/**
+	 * Gives the union of the bounds of the items, empty if there is none.
+	 *
+	 * @param result the rectangle to set, so nothing is allocated on each frame
+	 * @return the result rectangle
+	 */
+	public Rectangle bounds(Rectangle result) {
+		result.setBounds(bounds);
+		return result;
+	}
+
+	/**
+	 * @return a counter incremented each time an item is added or removed
+	 */
+	public int version() {
+		return version;
+	}
+
+	private void computeBounds() {
+		bounds.setBounds(0, 0, 0, 0);
+		boolean first = true;
+		for (Entry entry : entries) {
+			if (first) {
+				bounds.setBounds(entry.bounds);
+				first = false;
+			} else {
+				bounds.add(entry.bounds);
+			}
+		}
+	}
+
+	private interface BucketAction {
+		void apply(long key);
+	}
+
+	private static void forEachBucket(Rectangle r, BucketAction action) {
+		int fromX = Math.floorDiv(r.x, BUCKET_SIZE);
+		int toX = Math.floorDiv(r.x + r.width, BUCKET_SIZE);
+		int fromY = Math.floorDiv(r.y, BUCKET_SIZE);
+		int toY = Math.floorDiv(r.y + r.height, BUCKET_SIZE);
+		for (int by = fromY; by <= toY; by++) {
+			for (int bx = fromX; bx <= toX; bx++) {
+				action.apply(key(bx, by));
+			}
+		}
+	}
+
+	private static long key(int bucketX, int bucketY) {
+		return ((long) bucketX << 32) | (bucketY & 0xFFFFFFFFL);
+	}
+}
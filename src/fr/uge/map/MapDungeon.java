@@ -32,6 +32,9 @@ public class MapDungeon {
 	/** List of visited room indexes */
 	private final ArrayList<Integer> visited = new ArrayList<>();
 
+	/** Incremented each time the rooms, the player or the visited rooms change */
+	private int version;
+
 	/**
 	 * Creates an empty dungeon map.
 	 */
@@ -47,6 +50,7 @@ public class MapDungeon {
 	public void add(Room ele) {
 		Objects.requireNonNull(ele);
 		rooms.add(ele);
+		version++;
 	}
 
 	/**
@@ -67,6 +71,15 @@ public class MapDungeon {
 		return playerIndex;
 	}
 
+	/**
+	 * Returns a counter incremented each time the state of the map changes.
+	 *
+	 * @return the current version
+	 */
+	public int version() {
+		return version;
+	}
+
 	/**
 	 * Returns the previous player index.
 	 *
@@ -85,6 +98,7 @@ public class MapDungeon {
 		if (newIndex >= 0 && newIndex < rooms.size()) {
 			previousPlayerIndex = playerIndex;
 			playerIndex = newIndex;
+			version++;
 		}
 	}
 
@@ -180,6 +194,7 @@ public class MapDungeon {
 	public void markVisited(int index) {
 		if (!visited.contains(index)) {
 			visited.add(index);
+			version++;
 		}
 	}
 
@@ -197,6 +212,7 @@ public class MapDungeon {
 	 */
 	public void clearVisited() {
 		visited.clear();
+		version++;
 	}
 
 	/**